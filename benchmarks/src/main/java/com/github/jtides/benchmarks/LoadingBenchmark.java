@@ -0,0 +1,70 @@
+package com.github.jtides.benchmarks;
+
+import com.github.jtides.models.Constituents;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.StationSnapshot;
+import com.github.jtides.services.XMLDataLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the constituents and the stations, from the zipped XML or from a binary snapshot.
+ * A new loader per call, so each call pays the whole load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadingBenchmark {
+
+    @Param({"xml", "snapshot"})
+    public String source;
+
+    private Path snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("snapshot".equals(source)) {
+            XMLDataLoader xml = new XMLDataLoader(null);
+            snapshotFile = Files.createTempFile("jtides-benchmark", ".bin");
+            StationSnapshot.write(snapshotFile, xml.loadConstituentsFromXml(), xml.loadTideStationsFromXml(),
+                    xml.getSource(XMLDataLoader.CONSTITUENTS_ENTRY), xml.getSource(XMLDataLoader.STATIONS_ENTRY));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (snapshotFile != null) {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Benchmark
+    public Set<TideStation> loadTideStations() {
+        return new XMLDataLoader(snapshotFile).loadTideStationsFromXml();
+    }
+
+    @Benchmark
+    public Constituents loadConstituents() {
+        return new XMLDataLoader(snapshotFile).loadConstituentsFromXml();
+    }
+
+}
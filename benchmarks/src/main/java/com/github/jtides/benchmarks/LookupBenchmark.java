@@ -0,0 +1,50 @@
+package com.github.jtides.benchmarks;
+
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.XMLTideStationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving a station name, full name, name part or a differently written name
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Param({"Aba, Nagasaki, Japan", "Brest", "san francisco"})
+    public String station;
+
+    private XMLTideStationService tideService;
+
+    @Setup
+    public void setUp() {
+        tideService = new XMLTideStationService();
+    }
+
+    @Benchmark
+    public TideStation findTideStation() {
+        return tideService.findTideStation(station, 2020, tideService.getTideStations());
+    }
+
+    @Benchmark
+    public TideStation indexFind() {
+        return tideService.getStationIndex().find(station);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.github.jtides.benchmarks;
+
+import com.github.jtides.models.Coefficient;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.models.TimedValue;
+import com.github.jtides.services.CompiledStation;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+import com.github.jtides.util.TideUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One water height, through the harmonics list and through the compiled station, and the high/low waters of a day
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictionBenchmark {
+
+    @Param({"Aba, Nagasaki, Japan", "Brest", "San Francisco"})
+    public String station;
+
+    private final LocalDate day = LocalDate.of(2020, 6, 15);
+    private final LocalDateTime when = day.atTime(13, 37);
+
+    private TideCalculator tideCalculator;
+    private TideStation corrected;
+    private List<Coefficient> constSpeed;
+    private CompiledStation compiled;
+
+    @Setup
+    public void setUp() throws Exception {
+        XMLTideStationService tideService = new XMLTideStationService();
+        tideCalculator = new TideCalculator(tideService);
+        corrected = tideService.getTideStation(station, day.getYear());
+        constSpeed = tideService.getSiteConstSpeed();
+        compiled = tideService.getCompiledStation(station, day.getYear());
+    }
+
+    @Benchmark
+    public double waterHeight() {
+        return TideUtilities.getWaterHeight(corrected, constSpeed, when);
+    }
+
+    @Benchmark
+    public double compiledWaterHeight() {
+        return compiled.getWaterHeight(when);
+    }
+
+    @Benchmark
+    public List<TimedValue> highAndLowTides() throws Exception {
+        return tideCalculator.getHighAndLowTides(station, day);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.github.jtides.benchmarks;
+
+import com.github.jtides.models.TimedValue;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The water heights of a day, hourly and every minute
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TidesBenchmark {
+
+    @Param({"Aba, Nagasaki, Japan", "Brest", "San Francisco"})
+    public String station;
+
+    @Param({"60", "1"})
+    public int period;
+
+    private final LocalDate day = LocalDate.of(2020, 6, 15);
+
+    private TideCalculator tideCalculator;
+
+    @Setup
+    public void setUp() {
+        tideCalculator = new TideCalculator(new XMLTideStationService());
+    }
+
+    @Benchmark
+    public List<TimedValue> getTides() throws Exception {
+        return tideCalculator.getTides(station, day, period);
+    }
+
+}
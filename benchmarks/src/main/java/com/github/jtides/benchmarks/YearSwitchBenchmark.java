@@ -0,0 +1,56 @@
+package com.github.jtides.benchmarks;
+
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.XMLTideStationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * correctHarmonics for a different year on every call, 1970 to 2037 in turn.
+ * With a cache of one entry every call corrects the harmonics, with the default size it is a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YearSwitchBenchmark {
+
+    private final static int FIRST_YEAR = 1970;
+    private final static int YEARS = 68;
+
+    @Param({"Aba, Nagasaki, Japan", "Brest", "San Francisco"})
+    public String station;
+
+    @Param({"1", "1024"})
+    public int cacheSize;
+
+    private XMLTideStationService tideService;
+    private TideStation loaded;
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        tideService = new XMLTideStationService(cacheSize);
+        loaded = tideService.getStationIndex().find(station);
+    }
+
+    @Benchmark
+    public TideStation correctHarmonics() {
+        next = next + 1 == YEARS ? 0 : next + 1;
+        return tideService.correctHarmonics(loaded, FIRST_YEAR + next);
+    }
+
+}
@@ -1,21 +1,33 @@
 package com.github.jtides.api;
 
+import com.github.jtides.models.MetricsSnapshot;
+import com.github.jtides.models.StationType;
+import com.github.jtides.models.TideSeries;
 import com.github.jtides.models.TideStation;
 import com.github.jtides.models.TimedValue;
+import com.github.jtides.services.BulkPredictor;
+import com.github.jtides.services.MinMaxCalculator;
+import com.github.jtides.services.PredictionCache;
 import com.github.jtides.services.TideCalculator;
 import com.github.jtides.services.XMLTideStationService;
+import com.github.jtides.util.Metrics;
+import com.github.jtides.util.StationTree;
 import com.github.jtides.util.StationTreeNode;
-import com.github.jtides.util.TideUtilities;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Tides API
+ * Tides API, thread safe: one instance can be shared by all the threads of an application
  * @author https://github.com/crystalmark/tides
  * @author Gui Keller (Mainly tidying up the code, demo usage, and removing external deps)
  */
@@ -23,6 +35,10 @@ public class TideApi {
 
     private final XMLTideStationService tideService = new XMLTideStationService();
     private final TideCalculator tideCalculator = new TideCalculator(tideService);
+    private final MinMaxCalculator minMaxCalculator = new MinMaxCalculator(tideCalculator);
+    private final BulkPredictor bulkPredictor = new BulkPredictor(tideService, tideCalculator);
+    private final PredictionCache predictionCache = new PredictionCache(tideCalculator);
+    private volatile CachedTree stationTree;
 
     public TideApi() {
         super();
@@ -35,46 +51,309 @@ public class TideApi {
     public List<String> getStations() {
         Stream<String> stream = tideService.getTideStations().stream().map(TideStation::getFullName).sorted();
         List<String> xmlLoadedStations = stream.collect(Collectors.toList());
-        xmlLoadedStations.removeIf(station -> station.contains("expired") || station.contains("caution"));
+        xmlLoadedStations.removeIf(station -> !isListed(station));
         return xmlLoadedStations;
     }
 
     /**
-     *
+     * Stations whose name, or one of its name parts, starts with the given text (case and accents ignored)
+     * @param prefix String
+     * @param limit int max number of stations
+     * @return List<String> stations
+     */
+    public List<String> findStations(String prefix, int limit) {
+        return names(tideService.getStationIndex().findByPrefix(prefix, limit));
+    }
+
+    /**
+     * All the stations a name resolves to, more than one means the name is ambiguous
+     * and the first one is used by the other methods
+     * @param name String full name or name part
+     * @return List<String> stations
+     */
+    public List<String> getStationCandidates(String name) {
+        return names(tideService.getStationIndex().getCandidates(name));
+    }
+
+    /**
+     * The k stations closest to a position (great-circle distance), closest first
+     * @param latitude double decimal degrees
+     * @param longitude double decimal degrees
+     * @param k int max number of stations
+     * @param type StationType tide, current or any station
+     * @return List<String> stations
+     */
+    public List<String> getNearestStations(double latitude, double longitude, int k, StationType type) {
+        return names(tideService.getSpatialIndex().nearest(latitude, longitude, k, listed(type)));
+    }
+
+    /**
+     * The stations within a distance of a position (great-circle distance), closest first
+     * @param latitude double decimal degrees
+     * @param longitude double decimal degrees
+     * @param radiusKm double kilometers
+     * @param type StationType tide, current or any station
+     * @return List<String> stations
+     */
+    public List<String> getStationsWithinRadius(double latitude, double longitude, double radiusKm, StationType type) {
+        return names(tideService.getSpatialIndex().withinRadius(latitude, longitude, radiusKm, listed(type)));
+    }
+
+    /**
+     * The stations inside a latitude/longitude box, a box with minLongitude greater than maxLongitude crosses the 180th meridian
+     * @param minLatitude double decimal degrees
+     * @param minLongitude double decimal degrees
+     * @param maxLatitude double decimal degrees
+     * @param maxLongitude double decimal degrees
+     * @param type StationType tide, current or any station
+     * @return List<String> stations, south to north
+     */
+    public List<String> getStationsInBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, StationType type) {
+        return names(tideService.getSpatialIndex().inBoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude, listed(type)));
+    }
+
+    /**
+     * A new mutable copy of {@link #getStationTree()}
      * @return TreeMap<String, StationTreeNode>
      */
     public TreeMap<String, StationTreeNode> getStationsTree() {
-        Set<TideStation> tideStations = tideService.getTideStations();
-        tideStations.removeIf(station -> station.getFullName().contains("expired") || station.getFullName().contains("caution"));
-        return TideUtilities.buildStationTree(tideStations);
+        return getStationTree().toTreeMap();
+    }
+
+    /**
+     * The listed stations by time zone region, time zone city and name parts. Immutable, built once per loaded catalogue
+     * @return StationTree
+     */
+    public StationTree getStationTree() {
+        Set<TideStation> stations = tideService.getTideStations();
+        CachedTree cached = stationTree;
+        if (cached == null || cached.stations != stations) {
+            List<TideStation> listed = stations.stream()
+                    .filter(station -> isListed(station.getFullName()))
+                    .collect(Collectors.toList());
+            cached = new CachedTree(stations, StationTree.build(listed));
+            stationTree = cached;
+        }
+        return cached.tree;
     }
 
     /**
-     * It returns the all tides movements that might happen for a location on the given date
+     * It returns the all tides movements that might happen for a location on the given date. Cached, see {@link PredictionCache}
      * @param location String
      * @param date LocalDate
      * @return List<TimedValue>
      */
     public List<TimedValue> getTideHeightAtTimeAndPlace(String location, LocalDate date) {
         try {
-            return tideCalculator.getHighAndLowTides(location, date);
+            return new ArrayList<>(predictionCache.get(location, date, PredictionCache.Mode.HIGH_LOW).asList());
         } catch (Exception e) {
             throw new RuntimeException("Invalid params: "+location+" / "+date, e);
         }
     }
 
     /**
-     * It returns the 4 tides (High/Low/High/Low) movements that might happen for a location on the given date
+     * The high and low waters for a location on the given date, copied in the caller arrays without allocation once cached
+     * @param location String
+     * @param date LocalDate
+     * @param times long[] epoch milliseconds
+     * @param values double[]
+     * @param types byte[] {@link TideSeries#typeCode}
+     * @return int number of high and low waters of the day, only the first times.length are copied
+     */
+    public int getHighAndLowTides(String location, LocalDate date, long[] times, double[] values, byte[] types) {
+        return predictionCache.getHighAndLowTides(location, date, times, values, types);
+    }
+
+    /**
+     * Computes and caches the high and low waters and the hourly tides of the locations ahead of the requests
+     * @param locations Collection<String>
+     * @param from LocalDate
+     * @param to LocalDate
+     */
+    public void warmUp(Collection<String> locations, LocalDate from, LocalDate to) {
+        predictionCache.warmUp(locations, from, to, PredictionCache.Mode.HIGH_LOW);
+        predictionCache.warmUp(locations, from, to, PredictionCache.Mode.HOURLY);
+    }
+
+    /**
+     * All the high and low waters for a location from the first to the last day (included)
+     * @param location String
+     * @param from LocalDate
+     * @param to LocalDate
+     * @return List<TimedValue>
+     */
+    public List<TimedValue> getTideHeightAtTimeAndPlace(String location, LocalDate from, LocalDate to) {
+        try {
+            return tideCalculator.getHighAndLowTides(location, from, to);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid params: "+location+" / "+from+" - "+to, e);
+        }
+    }
+
+    /**
+     * The water heights for a location every period minutes, from the first to the last day (included).
+     * Evenly spaced instants: hourly, 23 values on the day the clocks go forward, 25 on the day they go back
+     * @param location String
+     * @param from LocalDate
+     * @param to LocalDate
+     * @param period int minutes
+     * @return List<TimedValue>
+     */
+    public List<TimedValue> getTides(String location, LocalDate from, LocalDate to, int period) {
+        try {
+            return tideCalculator.getTides(location, from, to, period);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid params: "+location+" / "+from+" - "+to+" / "+period, e);
+        }
+    }
+
+    /**
+     * Same as {@link #getTides(String, LocalDate, LocalDate, int)} in columns, for long periods or short steps
+     * @param location String
+     * @param from LocalDate
+     * @param to LocalDate
+     * @param period int minutes
+     * @return TideSeries
+     */
+    public TideSeries getTideSeries(String location, LocalDate from, LocalDate to, int period) {
+        return tideCalculator.getTideSeries(location, from, to, period);
+    }
+
+    /**
+     * All the high and low waters for a location from the first to the last day (included), in columns
+     * @param location String
+     * @param from LocalDate
+     * @param to LocalDate
+     * @return TideSeries
+     */
+    public TideSeries getHighAndLowTideSeries(String location, LocalDate from, LocalDate to) {
+        return tideCalculator.getHighAndLowTideSeries(location, from, to);
+    }
+
+    /**
+     * The water heights for a location every period minutes from start, computed lazily as the stream is consumed
+     * @param location String
+     * @param start LocalDateTime
+     * @param period int minutes
+     * @return Stream<TimedValue> without end, to be limited
+     */
+    public Stream<TimedValue> streamTides(String location, LocalDateTime start, int period) {
+        return tideCalculator.streamTides(location, start, period);
+    }
+
+    /**
+     * The water height for a location at an instant
+     * @param location String
+     * @param epochSecond long seconds since 1970-01-01T00:00Z
+     * @return double in the station unit
+     */
+    public double getWaterHeight(String location, long epochSecond) {
+        return tideCalculator.getWaterHeight(location, epochSecond);
+    }
+
+    /**
+     * The water heights for a location at count instants, stepSeconds apart
+     * @param location String
+     * @param startEpochSecond long seconds since 1970-01-01T00:00Z
+     * @param stepSeconds long
+     * @param count int
+     * @return double[] in the station unit
+     */
+    public double[] getWaterHeights(String location, long startEpochSecond, long stepSeconds, int count) {
+        return tideCalculator.getWaterHeights(location, startEpochSecond, stepSeconds, count);
+    }
+
+    /**
+     * It returns the 4 tides (High/Low/High/Low) movements that might happen for a location on the given date. Cached, see {@link PredictionCache}.
+     * One value per hour of the day: 23 on the day the clocks go forward, 25 on the day they go back
      * @param location String
      * @param date LocalDate
      * @return List<TimedValue>
      */
     public List<TimedValue> getHourlyTides(String location, LocalDate date) {
         try {
-            return tideCalculator.getTides(location, date, 60);
+            return new ArrayList<>(predictionCache.get(location, date, PredictionCache.Mode.HOURLY).asList());
         } catch (Exception e) {
             throw new RuntimeException("Invalid params: "+location+" / "+date, e);
         }
     }
 
+    /**
+     * High and low waters of every listed station of the given type, computed in parallel
+     * @param type StationType
+     * @param from LocalDate
+     * @param to LocalDate
+     * @param sink BulkPredictor.TideSink called once per station, from several threads
+     * @return int number of stations
+     */
+    public int getAllHighAndLowTides(StationType type, LocalDate from, LocalDate to, BulkPredictor.TideSink sink) {
+        return bulkPredictor.getHighAndLowTides(listed(type), from, to, sink);
+    }
+
+    /**
+     * Same as {@link #getAllHighAndLowTides(StationType, LocalDate, LocalDate, BulkPredictor.TideSink)} on the given executor,
+     * to keep the common pool free or bound the threads used
+     * @param type StationType
+     * @param from LocalDate
+     * @param to LocalDate
+     * @param sink BulkPredictor.TideSink called once per station, from the executor threads
+     * @param executor Executor the stations are computed on
+     * @return int number of stations
+     */
+    public int getAllHighAndLowTides(StationType type, LocalDate from, LocalDate to, BulkPredictor.TideSink sink, Executor executor) {
+        return bulkPredictor.getHighAndLowTides(listed(type), from, to, sink, executor);
+    }
+
+    /**
+     * Lowest and highest water of the year for a location, to scale a chart. Cached after the first call
+     * @param location String
+     * @param year int
+     * @return double[] {min, max}
+     */
+    public double[] getMinMaxWaterHeight(String location, int year) {
+        return minMaxCalculator.getMinMaxWH(location, year);
+    }
+
+    /**
+     * Lowest and highest water between two dates for a location
+     * @param location String
+     * @param from LocalDateTime
+     * @param to LocalDateTime
+     * @return double[] {min, max}
+     */
+    public double[] getMinMaxWaterHeight(String location, LocalDateTime from, LocalDateTime to) {
+        return minMaxCalculator.getMinMaxWH(location, from, to);
+    }
+
+    /**
+     * Library metrics, empty unless enabled with the jtides.metrics system property or {@link Metrics#enable()}
+     * @return MetricsSnapshot
+     */
+    public MetricsSnapshot getMetrics() {
+        return Metrics.getSnapshot();
+    }
+
+    private static boolean isListed(String station) {
+        return !station.contains("expired") && !station.contains("caution");
+    }
+
+    private static Predicate<TideStation> listed(StationType type) {
+        return station -> isListed(station.getFullName()) && type.matches(station);
+    }
+
+    private static List<String> names(List<TideStation> stations) {
+        return stations.stream().map(TideStation::getFullName).collect(Collectors.toList());
+    }
+
+    // tree of the listed stations of one catalogue, told apart by the identity of its station set
+    private static class CachedTree {
+        private final Set<TideStation> stations;
+        private final StationTree tree;
+
+        private CachedTree(Set<TideStation> stations, StationTree tree) {
+            this.stations = stations;
+            this.tree = tree;
+        }
+    }
+
 }
@@ -1,15 +1,20 @@
 package com.github.jtides.models;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 public class ConstSpeed {
 
     private int idx = 0;
     private String coeffName = "";
     private double coeffValue = 0d;
-    private final Map<Integer, Double> equilibrium = new HashMap<Integer, Double>();
-    private final Map<Integer, Double> factors     = new HashMap<Integer, Double>();
+    private final Years equilibrium = new Years();
+    private final Years factors = new Years();
 
     public ConstSpeed(int idx, String name, double val) {
         this.idx = idx;
@@ -18,11 +23,15 @@ public class ConstSpeed {
     }
 
     public void putEquilibrium(int year, double val) {
-        equilibrium.put(new Integer(year), new Double(val));
+        equilibrium.put(year, val);
     }
 
     public void putFactor(int year, double val) {
-        factors.put(new Integer(year), new Double(val));
+        factors.put(year, val);
+    }
+
+    public int getIdx() {
+        return idx;
     }
 
     public String getCoeffName() {
@@ -33,12 +42,210 @@ public class ConstSpeed {
         return coeffValue;
     }
 
+    /**
+     * @param year int
+     * @return double equilibrium argument in degrees, NaN when the year is not there
+     */
+    public double getEquilibrium(int year) {
+        return equilibrium.get(year);
+    }
+
+    /**
+     * @param year int
+     * @return double node factor, NaN when the year is not there
+     */
+    public double getFactor(int year) {
+        return factors.get(year);
+    }
+
+    /**
+     * @return int first year with an equilibrium argument or a node factor, 0 when none
+     */
+    public int getFirstYear() {
+        if (equilibrium.isEmpty() || factors.isEmpty()) {
+            return equilibrium.isEmpty() ? factors.getFirstYear() : equilibrium.getFirstYear();
+        }
+        return Math.min(equilibrium.getFirstYear(), factors.getFirstYear());
+    }
+
+    /**
+     * @return int last year with an equilibrium argument or a node factor, -1 when none
+     */
+    public int getLastYear() {
+        if (equilibrium.isEmpty() || factors.isEmpty()) {
+            return equilibrium.isEmpty() ? factors.getLastYear() : equilibrium.getLastYear();
+        }
+        return Math.max(equilibrium.getLastYear(), factors.getLastYear());
+    }
+
+    /**
+     * @return Map<Integer, Double> live view by year, changes write through (a null or NaN value removes the year)
+     * @deprecated use {@link #getEquilibrium(int)} and {@link #putEquilibrium(int, double)}
+     */
+    @Deprecated
     public Map<Integer, Double> getEquilibrium() {
-        return equilibrium;
+        return equilibrium.view;
     }
 
+    /**
+     * @return Map<Integer, Double> live view by year, changes write through (a null or NaN value removes the year)
+     * @deprecated use {@link #getFactor(int)} and {@link #putFactor(int, double)}
+     */
+    @Deprecated
     public Map<Integer, Double> getFactors() {
-        return factors;
+        return factors.view;
+    }
+
+    /**
+     * Values by year in one array from the first year put, NaN for the missing years
+     */
+    private static class Years {
+        private int firstYear = 0;
+        private double[] values = new double[0];
+        private final Map<Integer, Double> view = new View();
+
+        private void put(int year, double value) {
+            if (values.length == 0) {
+                firstYear = year;
+                values = new double[]{value};
+                return;
+            }
+            if (year < firstYear) {
+                double[] grown = new double[values.length + firstYear - year];
+                Arrays.fill(grown, Double.NaN);
+                System.arraycopy(values, 0, grown, firstYear - year, values.length);
+                values = grown;
+                firstYear = year;
+            } else if (year - firstYear >= values.length) {
+                int length = values.length;
+                values = Arrays.copyOf(values, year - firstYear + 1);
+                Arrays.fill(values, length, values.length, Double.NaN);
+            }
+            values[year - firstYear] = value;
+        }
+
+        private double get(int year) {
+            int i = year - firstYear;
+            return i >= 0 && i < values.length ? values[i] : Double.NaN;
+        }
+
+        private boolean isEmpty() {
+            return values.length == 0;
+        }
+
+        private int getFirstYear() {
+            return firstYear;
+        }
+
+        private int getLastYear() {
+            return firstYear + values.length - 1;
+        }
+
+        private void remove(int year) {
+            int i = year - firstYear;
+            if (i >= 0 && i < values.length) {
+                values[i] = Double.NaN;
+            }
+        }
+
+        // the years as a map, what getEquilibrium() and getFactors() returned before the arrays
+        private class View extends AbstractMap<Integer, Double> {
+
+            @Override
+            public Double get(Object key) {
+                if (!(key instanceof Integer)) {
+                    return null;
+                }
+                double value = Years.this.get((Integer) key);
+                return Double.isNaN(value) ? null : value;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Double put(Integer year, Double value) {
+                Double previous = get(year);
+                if (value == null || Double.isNaN(value)) {
+                    Years.this.remove(year);
+                } else {
+                    Years.this.put(year, value);
+                }
+                return previous;
+            }
+
+            @Override
+            public Double remove(Object key) {
+                Double previous = get(key);
+                if (previous != null) {
+                    Years.this.remove((Integer) key);
+                }
+                return previous;
+            }
+
+            @Override
+            public Set<Entry<Integer, Double>> entrySet() {
+                return new AbstractSet<Entry<Integer, Double>>() {
+                    @Override
+                    public Iterator<Entry<Integer, Double>> iterator() {
+                        return new Iterator<Entry<Integer, Double>>() {
+                            private int next = skip(0);
+                            private int last = -1;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < values.length;
+                            }
+
+                            @Override
+                            public Entry<Integer, Double> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                last = next;
+                                next = skip(next + 1);
+                                int year = firstYear + last;
+                                return new SimpleEntry<Integer, Double>(year, values[last]) {
+                                    @Override
+                                    public Double setValue(Double value) {
+                                        super.setValue(value);
+                                        return put(year, value);
+                                    }
+                                };
+                            }
+
+                            @Override
+                            public void remove() {
+                                if (last < 0) {
+                                    throw new IllegalStateException();
+                                }
+                                values[last] = Double.NaN;
+                                last = -1;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int size = 0;
+                        for (double value : values) {
+                            size += Double.isNaN(value) ? 0 : 1;
+                        }
+                        return size;
+                    }
+                };
+            }
+
+            // first year index from i with a value
+            private int skip(int i) {
+                while (i < values.length && Double.isNaN(values[i])) {
+                    i++;
+                }
+                return i;
+            }
+        }
     }
 
 }
@@ -1,14 +1,166 @@
 package com.github.jtides.models;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Constituent speeds by name, with their node factors and equilibrium arguments by year.
+ *
+ * The lookups by id ({@link #getId(String)}, the position in the map) read dense [constituent][year - first year]
+ * tables, built on the first lookup: the map must be filled before and not changed after.
+ */
 public class Constituents {
 
   private final Map<String, ConstSpeed> constSpeedMap = new LinkedHashMap<>();
-  
+  private volatile Tables tables;
+
   public Map<String, ConstSpeed> getConstSpeedMap() {
     return constSpeedMap;
   }
 
+  /**
+   * @param name String constituent name, e.g. "M2"
+   * @return int id of the constituent, -1 when unknown
+   */
+  public int getId(String name) {
+    Integer id = getTables().ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * @param id int from {@link #getId(String)}
+   * @return String constituent name
+   */
+  public String getName(int id) {
+    return getTables().names[id];
+  }
+
+  public int size() {
+    return getTables().names.length;
+  }
+
+  /**
+   * @return long hash of the names, speeds, node factors and equilibrium arguments, stable across restarts
+   */
+  public long getFingerprint() {
+    return getTables().fingerprint;
+  }
+
+  /**
+   * @return int first year of the tables
+   */
+  public int getFirstYear() {
+    return getTables().firstYear;
+  }
+
+  /**
+   * @return int last year of the tables, included
+   */
+  public int getLastYear() {
+    Tables t = getTables();
+    return t.firstYear + t.years - 1;
+  }
+
+  public boolean hasYear(int year) {
+    Tables t = getTables();
+    return year >= t.firstYear && year - t.firstYear < t.years;
+  }
+
+  /**
+   * @param id int from {@link #getId(String)}
+   * @param year int
+   * @return double node factor
+   * @throws IllegalArgumentException when the year is not in the tables, or not given for this constituent
+   */
+  public double getFactor(int id, int year) {
+    Tables t = getTables();
+    return t.value(t.factors, id, year, "node factor");
+  }
+
+  /**
+   * @param id int from {@link #getId(String)}
+   * @param year int
+   * @return double equilibrium argument in degrees
+   * @throws IllegalArgumentException when the year is not in the tables, or not given for this constituent
+   */
+  public double getEquilibrium(int id, int year) {
+    Tables t = getTables();
+    return t.value(t.equilibria, id, year, "equilibrium argument");
+  }
+
+  /**
+   * @param year int
+   * @throws IllegalArgumentException when the year is not in the tables
+   */
+  public void checkYear(int year) {
+    if (!hasYear(year)) {
+      throw new IllegalArgumentException("No harmonic data for " + year + ", years covered: " + getFirstYear() + "-" + getLastYear());
+    }
+  }
+
+  private Tables getTables() {
+    Tables t = tables;
+    if (t == null) {
+      t = new Tables(constSpeedMap);
+      tables = t;
+    }
+    return t;
+  }
+
+  private static class Tables {
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int firstYear;
+    private final int years;
+    private final double[][] factors;
+    private final double[][] equilibria;
+    private final long fingerprint;
+
+    private Tables(Map<String, ConstSpeed> constSpeedMap) {
+      int first = Integer.MAX_VALUE;
+      int last = Integer.MIN_VALUE;
+      for (ConstSpeed constSpeed : constSpeedMap.values()) {
+        if (constSpeed.getFirstYear() <= constSpeed.getLastYear()) {
+          first = Math.min(first, constSpeed.getFirstYear());
+          last = Math.max(last, constSpeed.getLastYear());
+        }
+      }
+      firstYear = first > last ? 0 : first;
+      years = first > last ? 0 : last - first + 1;
+      names = new String[constSpeedMap.size()];
+      ids = new HashMap<>(constSpeedMap.size() * 2);
+      factors = new double[names.length][years];
+      equilibria = new double[names.length][years];
+      long hash = 31L * firstYear + years;
+      int id = 0;
+      for (ConstSpeed constSpeed : constSpeedMap.values()) {
+        names[id] = constSpeed.getCoeffName();
+        ids.put(names[id], id);
+        hash = 31L * hash + names[id].hashCode();
+        hash = 31L * hash + Double.doubleToLongBits(constSpeed.getCoeffValue());
+        for (int y = 0; y < years; y++) {
+          factors[id][y] = constSpeed.getFactor(firstYear + y);
+          equilibria[id][y] = constSpeed.getEquilibrium(firstYear + y);
+          hash = 31L * hash + Double.doubleToLongBits(factors[id][y]);
+          hash = 31L * hash + Double.doubleToLongBits(equilibria[id][y]);
+        }
+        id++;
+      }
+      fingerprint = hash;
+    }
+
+    private double value(double[][] table, int id, int year, String what) {
+      int y = year - firstYear;
+      if (y < 0 || y >= years) {
+        throw new IllegalArgumentException("No harmonic data for " + year + ", years covered: " + firstYear + "-" + (firstYear + years - 1));
+      }
+      double value = table[id][y];
+      if (Double.isNaN(value)) {
+        throw new IllegalArgumentException("No " + what + " for " + names[id] + " in " + year);
+      }
+      return value;
+    }
+  }
+
 }
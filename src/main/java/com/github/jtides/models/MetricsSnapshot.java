@@ -0,0 +1,132 @@
+package com.github.jtides.models;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of the library metrics at one point in time.
+ * Timers are distributions of nanoseconds, histograms of plain values, percentiles are accurate to a power of two.
+ */
+public class MetricsSnapshot {
+
+    public final static MetricsSnapshot EMPTY = new MetricsSnapshot(0L,
+            Collections.<String, Long>emptyMap(), Collections.<String, Distribution>emptyMap(), Collections.<String, Long>emptyMap());
+
+    private final long elapsedMillis;
+    private final Map<String, Long> counters;
+    private final Map<String, Distribution> distributions;
+    private final Map<String, Long> stationPredictions;
+
+    public MetricsSnapshot(long elapsedMillis, Map<String, Long> counters, Map<String, Distribution> distributions,
+                           Map<String, Long> stationPredictions) {
+        this.elapsedMillis = elapsedMillis;
+        this.counters = Collections.unmodifiableMap(counters);
+        this.distributions = Collections.unmodifiableMap(distributions);
+        this.stationPredictions = Collections.unmodifiableMap(stationPredictions);
+    }
+
+    /**
+     * @return long since the metrics were enabled or reset
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0L : value;
+    }
+
+    /**
+     * @return Map<String, Distribution> timers and histograms by name
+     */
+    public Map<String, Distribution> getDistributions() {
+        return distributions;
+    }
+
+    public Distribution getDistribution(String name) {
+        Distribution distribution = distributions.get(name);
+        return distribution == null ? Distribution.EMPTY : distribution;
+    }
+
+    /**
+     * @return Map<String, Long> water heights and extrema computed, by station full name
+     */
+    public Map<String, Long> getStationPredictions() {
+        return stationPredictions;
+    }
+
+    /**
+     * @param station String full name
+     * @return double predictions per second over {@link #getElapsedMillis()}
+     */
+    public double getStationPredictionRate(String station) {
+        Long predictions = stationPredictions.get(station);
+        return predictions == null || elapsedMillis == 0 ? 0D : predictions * 1000D / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "elapsedMillis=" + elapsedMillis + ", counters=" + counters + ", distributions=" + distributions
+                + ", stations=" + stationPredictions.size();
+    }
+
+    public static class Distribution {
+
+        public final static Distribution EMPTY = new Distribution(0L, 0L, 0L, 0L, 0L, 0L);
+
+        private final long count;
+        private final long sum;
+        private final long max;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+
+        public Distribution(long count, long sum, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0D : (double) sum / count;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + getMean() + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99 + ", max=" + max;
+        }
+    }
+
+}
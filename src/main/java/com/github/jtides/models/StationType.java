@@ -0,0 +1,30 @@
+package com.github.jtides.models;
+
+public enum StationType {
+
+    ANY("Any station"),
+    TIDE("Tide station"),
+    CURRENT("Current station");
+
+    private final String description;
+
+    StationType(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean matches(TideStation station) {
+        switch (this) {
+            case TIDE:
+                return station.isTideStation();
+            case CURRENT:
+                return station.isCurrentStation();
+            default:
+                return true;
+        }
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.github.jtides.models;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Chronological water heights (or currents) held in columns: epoch milliseconds, values and tide type codes,
+ * about 17 bytes a value where a List<TimedValue> takes over 100. Immutable once built, so it can be shared.
+ *
+ * A series is a window [offset, offset + size) on its arrays: {@link #slice(int, int)} and
+ * {@link #between(long, long)} return views on the same arrays, {@link #asList()} makes the TimedValues on demand.
+ */
+public final class TideSeries {
+
+    /** Type code of a value without {@link TideType} */
+    public final static byte NO_TYPE = -1;
+
+    public final static TideSeries EMPTY = new TideSeries(ZoneId.of("UTC"), new long[0], new double[0], new byte[0]);
+
+    private final static TideType[] TYPES = TideType.values();
+
+    private final ZoneId zoneId;
+    private final ZoneRules rules;
+    private final long[] times;
+    private final double[] values;
+    private final byte[] types;
+    private final int offset;
+    private final int size;
+
+    /**
+     * @param zoneId ZoneId of the station, for the local times
+     * @param times long[] epoch milliseconds, ascending
+     * @param values double[] same length
+     * @param types byte[] same length, {@link #typeCode(TideType)} of each value
+     */
+    public TideSeries(ZoneId zoneId, long[] times, double[] values, byte[] types) {
+        this(zoneId, times, values, types, 0, times.length);
+    }
+
+    /**
+     * The arrays are not copied, they must not be changed afterwards
+     * @param zoneId ZoneId of the station, for the local times
+     * @param times long[] epoch milliseconds, ascending
+     * @param values double[]
+     * @param types byte[]
+     * @param offset int index of the first value in the arrays
+     * @param size int number of values
+     */
+    public TideSeries(ZoneId zoneId, long[] times, double[] values, byte[] types, int offset, int size) {
+        if (offset < 0 || size < 0 || offset + size > times.length || offset + size > values.length || offset + size > types.length) {
+            throw new IllegalArgumentException("Invalid window: " + offset + " + " + size);
+        }
+        this.zoneId = zoneId;
+        this.rules = zoneId.getRules();
+        this.times = times;
+        this.values = values;
+        this.types = types;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public static byte typeCode(TideType type) {
+        return type == null ? NO_TYPE : (byte) type.ordinal();
+    }
+
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index int from 0 to size - 1
+     * @return long epoch millisecond
+     */
+    public long getEpochMilli(int index) {
+        return times[offset + checkIndex(index)];
+    }
+
+    /**
+     * @param index int from 0 to size - 1
+     * @return LocalDateTime station local time, to the millisecond
+     */
+    public LocalDateTime getLocalDateTime(int index) {
+        long epochMilli = getEpochMilli(index);
+        long epochSecond = Math.floorDiv(epochMilli, 1000L);
+        int nanos = (int) Math.floorMod(epochMilli, 1000L) * 1000000;
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, rules.getOffset(Instant.ofEpochSecond(epochSecond)));
+    }
+
+    public double getValue(int index) {
+        return values[offset + checkIndex(index)];
+    }
+
+    public byte getTypeCode(int index) {
+        return types[offset + checkIndex(index)];
+    }
+
+    /**
+     * @param index int from 0 to size - 1
+     * @return TideType or null
+     */
+    public TideType getType(int index) {
+        byte code = getTypeCode(index);
+        return code == NO_TYPE ? null : TYPES[code];
+    }
+
+    /**
+     * @param index int from 0 to size - 1
+     * @return TimedValue a new one on each call
+     */
+    public TimedValue get(int index) {
+        TimedValue tide = new TimedValue(getLocalDateTime(index), getValue(index));
+        tide.setType(getType(index));
+        return tide;
+    }
+
+    /**
+     * View on the values from (included) to (excluded), sharing the arrays
+     * @param from int
+     * @param to int
+     * @return TideSeries
+     */
+    public TideSeries slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Invalid slice: " + from + " - " + to + " of " + size);
+        }
+        return new TideSeries(zoneId, times, values, types, offset + from, to - from);
+    }
+
+    /**
+     * View on the values timed from (included) to (excluded), sharing the arrays
+     * @param fromEpochMilli long
+     * @param toEpochMilli long
+     * @return TideSeries
+     */
+    public TideSeries between(long fromEpochMilli, long toEpochMilli) {
+        int from = indexOf(fromEpochMilli);
+        return slice(from, Math.max(from, indexOf(toEpochMilli)));
+    }
+
+    /**
+     * @param epochMilli long
+     * @return int index of the first value timed at or after epochMilli, size if none
+     */
+    public int indexOf(long epochMilli) {
+        int index = Arrays.binarySearch(times, offset, offset + size, epochMilli);
+        if (index < 0) {
+            return -index - 1 - offset;
+        }
+        // first of equal times
+        while (index > offset && times[index - 1] == epochMilli) {
+            index--;
+        }
+        return index - offset;
+    }
+
+    /**
+     * @param type TideType
+     * @return int number of values of that type
+     */
+    public int count(TideType type) {
+        byte code = typeCode(type);
+        int count = 0;
+        for (int i = offset; i < offset + size; i++) {
+            if (types[i] == code) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return TideSeries the high and low waters only, copied in new arrays
+     */
+    public TideSeries getHighAndLowWaters() {
+        byte hw = typeCode(TideType.HW);
+        byte lw = typeCode(TideType.LW);
+        Builder builder = new Builder(zoneId, count(TideType.HW) + count(TideType.LW));
+        for (int i = offset; i < offset + size; i++) {
+            if (types[i] == hw || types[i] == lw) {
+                builder.add(times[i], values[i], types[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    public long[] toEpochMilliArray() {
+        return Arrays.copyOfRange(times, offset, offset + size);
+    }
+
+    public double[] toValueArray() {
+        return Arrays.copyOfRange(values, offset, offset + size);
+    }
+
+    /**
+     * Read only list on this series, the TimedValues are made on each get
+     * @return List<TimedValue>
+     */
+    public List<TimedValue> asList() {
+        return new TimedValues();
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return size == 0 ? "TideSeries[]" : "TideSeries[" + size + " values, " + getLocalDateTime(0) + " - " + getLocalDateTime(size - 1) + "]";
+    }
+
+    private class TimedValues extends AbstractList<TimedValue> implements RandomAccess {
+        @Override
+        public TimedValue get(int index) {
+            return TideSeries.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Appends values in chronological order, growing the arrays as needed. Not thread safe
+     */
+    public static class Builder {
+        private final ZoneId zoneId;
+        private long[] times;
+        private double[] values;
+        private byte[] types;
+        private int size;
+
+        public Builder(ZoneId zoneId, int capacity) {
+            this.zoneId = zoneId;
+            this.times = new long[Math.max(capacity, 8)];
+            this.values = new double[times.length];
+            this.types = new byte[times.length];
+        }
+
+        public Builder add(long epochMilli, double value, TideType type) {
+            return add(epochMilli, value, typeCode(type));
+        }
+
+        public Builder add(long epochMilli, double value, byte typeCode) {
+            if (size == times.length) {
+                int capacity = size + (size >> 1);
+                times = Arrays.copyOf(times, capacity);
+                values = Arrays.copyOf(values, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            times[size] = epochMilli;
+            values[size] = value;
+            types[size] = typeCode;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return TideSeries on the arrays filled so far, the builder must not be used afterwards
+         */
+        public TideSeries build() {
+            return new TideSeries(zoneId, times, values, types, 0, size);
+        }
+    }
+
+}
@@ -1,7 +1,9 @@
 package com.github.jtides.models;
 
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TimeZone;
 
 public class TideStation {
 
@@ -17,6 +19,7 @@ public class TideStation {
 	private double baseHeight = 0D;
 	private String unit = "";
 	private String timeZone = "";
+	private ZoneId zoneId = null;
 	private String timeOffset = "";
 	private final List<Harmonic> harmonics = new ArrayList<>();
 	private int harmonicsHaveBeenFixedForYear = -1;
@@ -25,6 +28,26 @@ public class TideStation {
 		super();
 	}
 
+	/**
+	 * Deep copy, the harmonics are new objects so they can be corrected without touching the original station
+	 * @param station TideStation
+	 */
+	public TideStation(TideStation station) {
+		this.fullName = station.getFullName();
+		this.nameParts.addAll(station.getNameParts());
+		this.latitude = station.getLatitude();
+		this.longitude = station.getLongitude();
+		this.baseHeight = station.getBaseHeight();
+		this.unit = station.getUnit();
+		this.timeZone = station.getTimeZone();
+		this.zoneId = station.getZoneId();
+		this.timeOffset = station.getTimeOffset();
+		for (Harmonic harmonic : station.getHarmonics()) {
+			this.harmonics.add(new Harmonic(harmonic.getName(), harmonic.getAmplitude(), harmonic.getEpoch()));
+		}
+		this.harmonicsHaveBeenFixedForYear = station.yearHarmonicsFixed();
+	}
+
 	public void setFullName(String fullName) {
 		this.fullName = fullName;
 	}
@@ -73,14 +96,28 @@ public class TideStation {
 		return harmonics;
 	}
 
+	/**
+	 * The zone rules are resolved here, once, unknown zones are GMT as in {@link TimeZone#getTimeZone(String)}
+	 * @param timeZone String zone id
+	 */
 	public void setTimeZone(String timeZone) {
 		this.timeZone = timeZone;
+		this.zoneId = TimeZone.getTimeZone(timeZone).toZoneId();
 	}
 
 	public String getTimeZone() {
 		return timeZone;
 	}
 
+	public ZoneId getZoneId() {
+		ZoneId zone = zoneId;
+		if (zone == null) {
+			zone = TimeZone.getTimeZone(timeZone).toZoneId();
+			zoneId = zone;
+		}
+		return zone;
+	}
+
 	public void setTimeOffset(String timeOffset) {
 		this.timeOffset = timeOffset;
 	}
@@ -100,18 +137,18 @@ public class TideStation {
 	// --- Helpers
 
 	public String getDisplayUnit() {
-		if (unit.equals(SQUARE_KNOTS)) {
+		if (getUnit().equals(SQUARE_KNOTS)) {
 			return KNOTS;
 		}
-		return unit;
+		return getUnit();
 	}
 
 	public boolean isCurrentStation() {
-		return unit.startsWith(KNOTS);
+		return getUnit().startsWith(KNOTS);
 	}
 
 	public boolean isTideStation() {
-		return !unit.startsWith(KNOTS);
+		return !getUnit().startsWith(KNOTS);
 	}
 
 	@Override
@@ -0,0 +1,104 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+import com.github.jtides.models.TimedValue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * High and low waters for many stations at once, one task per station on an executor.
+ * Each task resolves the station once and compiles each year of the period once, through the
+ * shared (station, year) cache of {@link XMLTideStationService}.
+ */
+public class BulkPredictor {
+
+    private final XMLTideStationService tideService;
+    private final TideCalculator tideCalculator;
+    private final Executor executor;
+
+    @FunctionalInterface
+    public interface TideSink {
+        /**
+         * Called once per station, from the executor threads, in no particular order
+         * @param station TideStation as loaded
+         * @param tides List<TimedValue> chronological high and low waters
+         */
+        void accept(TideStation station, List<TimedValue> tides);
+    }
+
+    public BulkPredictor(XMLTideStationService tideService, TideCalculator tideCalculator) {
+        this(tideService, tideCalculator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param tideService XMLTideStationService
+     * @param tideCalculator TideCalculator
+     * @param executor Executor the stations are computed on, a ForkJoinPool or any ExecutorService
+     */
+    public BulkPredictor(XMLTideStationService tideService, TideCalculator tideCalculator, Executor executor) {
+        this.tideService = tideService;
+        this.tideCalculator = tideCalculator;
+        this.executor = executor;
+    }
+
+    /**
+     * Waits for all the stations, when some fail the others still complete and the failure of the first station
+     * by full name is thrown, whatever order the tasks complete in
+     * @param filter Predicate<TideStation> stations to compute
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @param sink TideSink thread safe
+     * @return int number of stations computed
+     */
+    public int getHighAndLowTides(Predicate<TideStation> filter, LocalDate from, LocalDate to, TideSink sink) {
+        return getHighAndLowTides(filter, from, to, sink, executor);
+    }
+
+    /**
+     * Same as {@link #getHighAndLowTides(Predicate, LocalDate, LocalDate, TideSink)} on another executor
+     * @param filter Predicate<TideStation> stations to compute
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @param sink TideSink thread safe
+     * @param executor Executor the stations are computed on for this call
+     * @return int number of stations computed
+     */
+    public int getHighAndLowTides(Predicate<TideStation> filter, LocalDate from, LocalDate to, TideSink sink, Executor executor) {
+        List<TideStation> stations = new ArrayList<>();
+        for (TideStation station : tideService.getTideStations()) {
+            if (filter.test(station)) {
+                stations.add(station);
+            }
+        }
+        stations.sort(Comparator.comparing(TideStation::getFullName));
+
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[stations.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            TideStation station = stations.get(i);
+            tasks[i] = CompletableFuture.runAsync(() -> sink.accept(station, tideCalculator.getHighAndLowTides(station, from, to)), executor);
+        }
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException all) {
+            // every task is done, allOf reports any of the failures: join them in station order
+            for (CompletableFuture<?> task : tasks) {
+                try {
+                    task.join();
+                } catch (CompletionException ex) {
+                    throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+                }
+            }
+            throw all;
+        }
+        return tasks.length;
+    }
+
+}
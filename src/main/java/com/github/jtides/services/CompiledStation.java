@@ -0,0 +1,310 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.Coefficient;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideStation;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A station corrected for one year, flattened for evaluation: the harmonics are matched to their
+ * constituent speed once, terms with a zero amplitude are dropped and the rest are kept in dense arrays.
+ * Immutable, so it can be shared between threads.
+ *
+ * The water height is baseHeight + sum(amplitude[i] * cos(speed[i] * t - epoch[i])), t in hours since
+ * Jan 1st 00:00 (station local time) of the compiled year, same as {@link com.github.jtides.util.TideUtilities#getWaterHeight}.
+ */
+public class CompiledStation implements HarmonicCurve {
+
+    public final static double HOURS_PER_SECOND = 0.00027777777777777778D;
+    public final static int REANCHOR_INTERVAL = 256;
+
+    private final TideStation station;
+    private final int year;
+    private final ZoneClock clock;
+    private final long jan1st;
+    private final double baseHeight;
+    private final boolean squared;
+    private final double[] amplitudes;
+    private final double[] speeds;
+    private final double[] epochs;
+
+    private CompiledStation(TideStation station, int year, double[] amplitudes, double[] speeds, double[] epochs) {
+        this.station = station;
+        this.year = year;
+        this.clock = ZoneClock.of(station.getZoneId());
+        this.jan1st = clock.getYearStart(year);
+        this.baseHeight = station.getBaseHeight();
+        this.squared = station.getUnit().contains("^2");
+        this.amplitudes = amplitudes;
+        this.speeds = speeds;
+        this.epochs = epochs;
+    }
+
+    /**
+     * @param station TideStation with harmonics already corrected for the year
+     * @param year int the harmonics were corrected for, also the time origin
+     * @param constSpeed List<Coefficient> constituent speeds in radians per hour
+     * @return CompiledStation
+     */
+    public static CompiledStation compile(TideStation station, int year, List<Coefficient> constSpeed) {
+        Map<String, Double> speedByName = new HashMap<>(constSpeed.size() * 2);
+        for (Coefficient coefficient : constSpeed) {
+            speedByName.putIfAbsent(coefficient.getName(), coefficient.getValue());
+        }
+        List<Harmonic> harmonics = station.getHarmonics();
+        double[] amplitudes = new double[harmonics.size()];
+        double[] speeds = new double[harmonics.size()];
+        double[] epochs = new double[harmonics.size()];
+        int terms = 0;
+        for (Harmonic harmonic : harmonics) {
+            Double speed = speedByName.get(harmonic.getName());
+            if (speed != null && harmonic.getAmplitude() != 0D) {
+                amplitudes[terms] = harmonic.getAmplitude();
+                speeds[terms] = speed;
+                epochs[terms] = harmonic.getEpoch();
+                terms++;
+            }
+        }
+        return new CompiledStation(station, year,
+                Arrays.copyOf(amplitudes, terms),
+                Arrays.copyOf(speeds, terms),
+                Arrays.copyOf(epochs, terms));
+    }
+
+    /**
+     * @return TideStation the corrected station this was compiled from
+     */
+    public TideStation getStation() {
+        return station;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public ZoneId getZoneId() {
+        return clock.getZoneId();
+    }
+
+    public ZoneClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return long epoch second of Jan 1st 00:00 local time of the compiled year, the time origin
+     */
+    public long getYearStart() {
+        return jan1st;
+    }
+
+    /**
+     * @return long epoch second of Jan 1st 00:00 local time of the next year
+     */
+    public long getYearEnd() {
+        return clock.getYearStart(year + 1);
+    }
+
+    /**
+     * @return int number of non zero harmonic terms
+     */
+    public int getTermCount() {
+        return amplitudes.length;
+    }
+
+    /**
+     * @param when LocalDateTime station local time
+     * @return double hours since Jan 1st of the compiled year, whole seconds
+     */
+    public double getHours(LocalDateTime when) {
+        return getHours(clock.toEpochSecond(when));
+    }
+
+    /**
+     * @param epochSecond long
+     * @return double hours since Jan 1st of the compiled year
+     */
+    @Override
+    public double getHours(long epochSecond) {
+        return (epochSecond - jan1st) * HOURS_PER_SECOND;
+    }
+
+    /**
+     * @param when ZonedDateTime
+     * @return double hours since Jan 1st of the compiled year, whole seconds
+     */
+    public double getHours(ZonedDateTime when) {
+        return getHours(when.toEpochSecond());
+    }
+
+    /**
+     * @param when LocalDateTime station local time
+     * @return double water height (or current speed) in the station unit
+     */
+    public double getWaterHeight(LocalDateTime when) {
+        return getWaterHeight(getHours(when));
+    }
+
+    /**
+     * @param epochSecond long
+     * @return double water height (or current speed) in the station unit
+     */
+    public double getWaterHeightAt(long epochSecond) {
+        return getWaterHeight(getHours(epochSecond));
+    }
+
+    /**
+     * @param hours double since Jan 1st 00:00 of the compiled year, may be negative or past the year end
+     * @return double water height (or current speed) in the station unit
+     */
+    @Override
+    public double getWaterHeight(double hours) {
+        return toValue(getSum(hours));
+    }
+
+    /**
+     * Water heights for values.length evenly spaced instants, same as calling
+     * {@link #getWaterHeight(double)} for each of them
+     * @param values double[] filled from index 0
+     * @param start ZonedDateTime first instant
+     * @param stepSeconds long between two instants
+     */
+    public void getWaterHeights(double[] values, ZonedDateTime start, long stepSeconds) {
+        getWaterHeights(values, 0, values.length, getHours(start), stepSeconds * HOURS_PER_SECOND);
+    }
+
+    /**
+     * {@link #getWaterHeights(double[], int, int, double, double)} for instants given in epoch seconds
+     * @param values double[]
+     * @param offset int first index written
+     * @param count int number of samples
+     * @param startEpochSecond long first sample
+     * @param stepSeconds long between two samples
+     */
+    public void getWaterHeightsAt(double[] values, int offset, int count, long startEpochSecond, long stepSeconds) {
+        getWaterHeights(values, offset, count, getHours(startEpochSecond), stepSeconds * HOURS_PER_SECOND);
+    }
+
+    /**
+     * Water heights for count evenly spaced times, written to values[offset .. offset + count).
+     *
+     * Instead of one cosine per term and sample, the phase of each term is rotated by its constant
+     * step angle (cos/sin addition formulas), and re-computed exactly every {@value #REANCHOR_INTERVAL} samples.
+     * Each rotation adds at most a few ulps of error, so the absolute error on a sample is below
+     * {@value #REANCHOR_INTERVAL} x 4 x 2^-53 x sum(|amplitude|), about 1e-13 x sum(|amplitude|):
+     * far below the rounding of the phase argument itself in {@link #getWaterHeight(double)} late in the year.
+     * @param values double[]
+     * @param offset int first index written
+     * @param count int number of samples
+     * @param startHours double hours since Jan 1st of the compiled year of the first sample
+     * @param stepHours double between two samples
+     */
+    @Override
+    public void getWaterHeights(double[] values, int offset, int count, double startHours, double stepHours) {
+        sum(values, offset, count, startHours, stepHours, false);
+        if (squared) {
+            int end = offset + count;
+            for (int i = offset; i < end; i++) {
+                values[i] = toValue(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Time derivative of the harmonic sum, in station unit per hour.
+     * For knots^2 stations it is the derivative before the square root, same sign as the derivative of the value.
+     * @param hours double since Jan 1st 00:00 of the compiled year
+     * @return double
+     */
+    @Override
+    public double getSlope(double hours) {
+        double value = 0D;
+        for (int i = 0; i < amplitudes.length; i++) {
+            value -= amplitudes[i] * speeds[i] * Math.sin(speeds[i] * hours - epochs[i]);
+        }
+        return value;
+    }
+
+    /**
+     * {@link #getSlope(double)} for count evenly spaced times, same rotation scheme and error bound
+     * as {@link #getWaterHeights(double[], int, int, double, double)} with amplitudes scaled by the speeds
+     * @param values double[]
+     * @param offset int first index written
+     * @param count int number of samples
+     * @param startHours double hours since Jan 1st of the compiled year of the first sample
+     * @param stepHours double between two samples
+     */
+    @Override
+    public void getSlopes(double[] values, int offset, int count, double startHours, double stepHours) {
+        sum(values, offset, count, startHours, stepHours, true);
+    }
+
+    /**
+     * @param hours double since Jan 1st 00:00 of the compiled year
+     * @return ZonedDateTime in the station time zone, to the millisecond
+     */
+    public ZonedDateTime getTime(double hours) {
+        return Instant.ofEpochMilli(getEpochMilli(hours)).atZone(clock.getZoneId());
+    }
+
+    /**
+     * @param hours double since Jan 1st 00:00 of the compiled year
+     * @return long epoch millisecond
+     */
+    @Override
+    public long getEpochMilli(double hours) {
+        return jan1st * 1000L + Math.round(hours * 3600000D);
+    }
+
+    // harmonic sum before the square root of knots^2 stations, what YearBlend mixes
+    double getSum(double hours) {
+        double value = baseHeight;
+        for (int i = 0; i < amplitudes.length; i++) {
+            value += amplitudes[i] * Math.cos(speeds[i] * hours - epochs[i]);
+        }
+        return value;
+    }
+
+    void getSums(double[] values, int offset, int count, double startHours, double stepHours) {
+        sum(values, offset, count, startHours, stepHours, false);
+    }
+
+    double toValue(double sum) {
+        return squared ? (sum >= 0.0D ? Math.sqrt(sum) : -Math.sqrt(-sum)) : sum;
+    }
+
+    // sum of amplitude * cos(phase) (or of -amplitude * speed * sin(phase) for the slope) by phase rotation
+    private void sum(double[] values, int offset, int count, double startHours, double stepHours, boolean slope) {
+        int end = offset + count;
+        Arrays.fill(values, offset, end, slope ? 0D : baseHeight);
+        for (int k = 0; k < amplitudes.length; k++) {
+            double speed = speeds[k];
+            double amplitude = slope ? amplitudes[k] * speed : amplitudes[k];
+            // -sin(x) = cos(x + pi/2)
+            double epoch = slope ? epochs[k] - Math.PI / 2 : epochs[k];
+            double delta = speed * stepHours;
+            double cosDelta = Math.cos(delta);
+            double sinDelta = Math.sin(delta);
+            for (int anchor = 0; anchor < count; anchor += REANCHOR_INTERVAL) {
+                double phase = speed * (startHours + anchor * stepHours) - epoch;
+                double c = amplitude * Math.cos(phase);
+                double s = amplitude * Math.sin(phase);
+                int blockEnd = Math.min(end, offset + anchor + REANCHOR_INTERVAL);
+                for (int i = offset + anchor; i < blockEnd; i++) {
+                    values[i] += c;
+                    double next = c * cosDelta - s * sinDelta;
+                    s = s * cosDelta + c * sinDelta;
+                    c = next;
+                }
+            }
+        }
+    }
+
+}
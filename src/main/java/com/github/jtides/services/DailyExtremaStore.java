@@ -0,0 +1,332 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.CacheStats;
+import com.github.jtides.models.TideSeries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * High and low waters of whole station-years, day by day, in a memory-mapped file kept across restarts.
+ * The records have a fixed size: a day is read with a few absolute gets, without allocation.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header  int magic, int version, int slotCount, int maxPerDay, long dataVersion
+ * slots   slotCount x (long key, int year, int lastUsed, {@value #DAYS} x day)
+ * day     short count, maxPerDay x (long epochMilli, double value, byte type)    count {@value #OVERFLOW}: not stored
+ * </pre>
+ * A (key, year) goes to one of {@value #PROBES} slots from its hash, the least recently used one (lastUsed in minutes)
+ * is overwritten when they are all taken. Key 0 marks a free slot, or one being written. The last uses are kept in
+ * memory and written to the file with the records and by {@link #flush()}.
+ * The key identifies the station data, the data version the constituents data and the prediction algorithm (see
+ * {@link PredictionCache}): a file of another format, size or data version is emptied when opened.
+ * Thread safe: writers take a lock, readers check afterwards that no write happened while they read and never write
+ * to the file.
+ */
+public class DailyExtremaStore implements Closeable {
+
+    public final static int MAGIC = 0x4A545845;
+    public final static int VERSION = 3;
+    public final static int DAYS = 366;
+    public final static int MAX_PER_DAY = 8;
+    public final static int PROBES = 8;
+    public final static int DEFAULT_SLOT_COUNT = 1024;
+    public final static short OVERFLOW = -1;
+
+    private final static int HEADER_SIZE = 4 * 4 + 8;
+    private final static int SLOT_HEADER_SIZE = 8 + 4 + 4;
+    private final static int EXTREMUM_SIZE = 8 + 8 + 1;
+    private final static int DAY_SIZE = 2 + MAX_PER_DAY * EXTREMUM_SIZE;
+    private final static int SLOT_SIZE = SLOT_HEADER_SIZE + DAYS * DAY_SIZE;
+    private final static int MAX_SLOT_COUNT = (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE;
+
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final long dataVersion;
+    // minute of the last use of each slot
+    private final int[] lastUsed;
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private DailyExtremaStore(MappedByteBuffer buffer, int slotCount, long dataVersion) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.dataVersion = dataVersion;
+        this.lastUsed = new int[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            lastUsed[slot] = buffer.getInt(slotOffset(slot) + 12);
+        }
+    }
+
+    /**
+     * Maps the file, created (sparse) when missing
+     * @param file Path
+     * @param slotCount int number of station-years kept, about 50 KB each
+     * @param dataVersion long see {@link PredictionCache#getDataVersion(TideCalculator)}
+     * @return DailyExtremaStore
+     * @throws IOException if the file cannot be mapped
+     */
+    public static DailyExtremaStore open(Path file, int slotCount, long dataVersion) throws IOException {
+        if (slotCount <= 0 || slotCount > MAX_SLOT_COUNT) {
+            throw new IllegalArgumentException("Slot count must be between 1 and " + MAX_SLOT_COUNT + ": " + slotCount);
+        }
+        int size = HEADER_SIZE + slotCount * SLOT_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean reset = channel.size() != size;
+            if (reset) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (reset || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                    || mapped.getInt(8) != slotCount || mapped.getInt(12) != MAX_PER_DAY || mapped.getLong(16) != dataVersion) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    mapped.putLong(slotOffset(slot), 0L);
+                }
+                mapped.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slotCount).putInt(12, MAX_PER_DAY).putLong(16, dataVersion);
+            }
+            return new DailyExtremaStore(mapped, slotCount, dataVersion);
+        }
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * @param key long station data fingerprint
+     * @param year int
+     * @return boolean true when the station-year is stored
+     */
+    public boolean contains(long key, int year) {
+        long stamp = lock.tryOptimisticRead();
+        boolean found = find(key, year) >= 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = find(key, year) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Copies the high and low waters of a day, at most times.length of them
+     * @param key long station data fingerprint
+     * @param year int
+     * @param dayOfYear int 1 to 366
+     * @param times long[] epoch milliseconds
+     * @param values double[]
+     * @param types byte[] {@link TideSeries#typeCode}
+     * @return int number of high and low waters of the day, -1 when not stored
+     */
+    public int read(long key, int year, int dayOfYear, long[] times, double[] values, byte[] types) {
+        long stamp = lock.tryOptimisticRead();
+        int count = copy(key, year, dayOfYear, times, values, types);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = copy(key, year, dayOfYear, times, values, types);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (count < 0) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return count;
+    }
+
+    /**
+     * Stores the high and low waters of a year, days with more than {@value #MAX_PER_DAY} are marked as not stored
+     * @param key long station data fingerprint, not 0
+     * @param year int
+     * @param dayStarts long[] epoch milliseconds of the start of each local day, and of the next year
+     * @param extrema TideSeries high and low waters of the year, chronological
+     */
+    public void write(long key, int year, long[] dayStarts, TideSeries extrema) {
+        if (dayStarts.length < 2 || dayStarts.length > DAYS + 1) {
+            throw new IllegalArgumentException("Invalid number of days: " + (dayStarts.length - 1));
+        }
+        if (key == 0L) {
+            throw new IllegalArgumentException("Key 0 marks a free slot");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(key, year);
+            if (slot < 0) {
+                slot = freeSlot(key, year);
+            }
+            int offset = slotOffset(slot);
+            // invalid while written
+            buffer.putLong(offset, 0L);
+            int days = dayStarts.length - 1;
+            int index = 0;
+            for (int day = 0; day < DAYS; day++) {
+                int dayOffset = offset + SLOT_HEADER_SIZE + day * DAY_SIZE;
+                int count = 0;
+                if (day < days) {
+                    while (index < extrema.size() && extrema.getEpochMilli(index) < dayStarts[day]) {
+                        index++;
+                    }
+                    for (; index < extrema.size() && extrema.getEpochMilli(index) < dayStarts[day + 1]; index++, count++) {
+                        if (count < MAX_PER_DAY) {
+                            int extremumOffset = dayOffset + 2 + count * EXTREMUM_SIZE;
+                            buffer.putLong(extremumOffset, extrema.getEpochMilli(index));
+                            buffer.putDouble(extremumOffset + 8, extrema.getValue(index));
+                            buffer.put(extremumOffset + 16, extrema.getTypeCode(index));
+                        }
+                    }
+                }
+                buffer.putShort(dayOffset, count > MAX_PER_DAY ? OVERFLOW : (short) count);
+            }
+            lastUsed[slot] = now();
+            buffer.putInt(offset + 8, year);
+            buffer.putInt(offset + 12, lastUsed[slot]);
+            buffer.putLong(offset, key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the last uses, then the mapped pages, to the file
+     */
+    public void flush() {
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                int offset = slotOffset(slot);
+                if (buffer.getLong(offset) != 0L) {
+                    buffer.putInt(offset + 12, lastUsed[slot]);
+                }
+            }
+            buffer.force();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Empties every slot
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                buffer.putLong(slotOffset(slot), 0L);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return CacheStats days read (hits and misses), station-years overwritten and stored
+     */
+    public CacheStats getStats() {
+        int size = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            size += buffer.getLong(slotOffset(slot)) != 0L ? 1 : 0;
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Flushes, the mapping itself is released by the garbage collector
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private int copy(long key, int year, int dayOfYear, long[] times, double[] values, byte[] types) {
+        if (dayOfYear < 1 || dayOfYear > DAYS) {
+            return -1;
+        }
+        int slot = find(key, year);
+        if (slot < 0) {
+            return -1;
+        }
+        int offset = slotOffset(slot);
+        int dayOffset = offset + SLOT_HEADER_SIZE + (dayOfYear - 1) * DAY_SIZE;
+        int count = buffer.getShort(dayOffset);
+        // OVERFLOW, or a record being written (the caller reads again under the lock)
+        if (count < 0 || count > MAX_PER_DAY) {
+            return -1;
+        }
+        int copied = Math.min(count, Math.min(times.length, Math.min(values.length, types.length)));
+        for (int i = 0; i < copied; i++) {
+            int extremumOffset = dayOffset + 2 + i * EXTREMUM_SIZE;
+            times[i] = buffer.getLong(extremumOffset);
+            values[i] = buffer.getDouble(extremumOffset + 8);
+            types[i] = buffer.get(extremumOffset + 16);
+        }
+        // a lost update between readers only ages the slot by a few minutes
+        lastUsed[slot] = now();
+        return count;
+    }
+
+    // slot holding (key, year), -1 when none
+    private int find(long key, int year) {
+        int first = firstSlot(key, year);
+        for (int probe = 0; probe < PROBES; probe++) {
+            int offset = slotOffset((first + probe) % slotCount);
+            if (buffer.getLong(offset) == key && buffer.getInt(offset + 8) == year) {
+                return (first + probe) % slotCount;
+            }
+        }
+        return -1;
+    }
+
+    // free slot of the probe window, else its least recently used one
+    private int freeSlot(long key, int year) {
+        int first = firstSlot(key, year);
+        int oldest = first;
+        int oldestUse = Integer.MAX_VALUE;
+        for (int probe = 0; probe < Math.min(PROBES, slotCount); probe++) {
+            int slot = (first + probe) % slotCount;
+            if (buffer.getLong(slotOffset(slot)) == 0L) {
+                return slot;
+            }
+            if (lastUsed[slot] < oldestUse) {
+                oldest = slot;
+                oldestUse = lastUsed[slot];
+            }
+        }
+        evictions.increment();
+        return oldest;
+    }
+
+    private int firstSlot(long key, int year) {
+        long hash = (key ^ (key >>> 32)) * 31 + year;
+        hash ^= hash >>> 17;
+        return (int) Math.floorMod(hash * 0x9E3779B97F4A7C15L, (long) slotCount);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // minutes since 1970, never 0
+    private static int now() {
+        return (int) Math.max(1L, System.currentTimeMillis() / 60000L);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideType;
+import com.github.jtides.util.Metric;
+import com.github.jtides.util.Metrics;
+
+/**
+ * Finds high and low waters (or slack/max currents) as the roots of the time derivative of the harmonic sum.
+ * The derivative is sampled on a coarse grid, every sign change brackets one extremum which is then refined
+ * with Brent's method to {@value #TOLERANCE_HOURS} hours (a few milliseconds).
+ * Two extrema closer than one grid step cancel each other out and are not reported.
+ */
+public class ExtremaFinder {
+
+    public final static double DEFAULT_GRID_MINUTES = 10D;
+    public final static double TOLERANCE_HOURS = 1E-6D;
+
+    private final static int MAX_ITERATIONS = 100;
+    private final static int GRID_BLOCK = 1024;
+
+    private final double gridHours;
+
+    public ExtremaFinder() {
+        this(DEFAULT_GRID_MINUTES);
+    }
+
+    /**
+     * @param gridMinutes double derivative sampling step, smaller finds closer extrema at a higher cost
+     */
+    public ExtremaFinder(double gridMinutes) {
+        if (!(gridMinutes > 0)) {
+            throw new IllegalArgumentException("Grid step must be positive: " + gridMinutes);
+        }
+        this.gridHours = gridMinutes / 60D;
+    }
+
+    @FunctionalInterface
+    public interface ExtremumHandler {
+        /**
+         * @param hours double since the time origin of the curve
+         * @param value double water height (or current) at that time
+         * @param type TideType HW or LW
+         */
+        void extremum(double hours, double value, TideType type);
+    }
+
+    /**
+     * Reports, in chronological order, the extrema in [fromHours, toHours)
+     * @param station HarmonicCurve a CompiledStation, or two years mixed around Jan 1st
+     * @param fromHours double since the time origin of the curve
+     * @param toHours double since the time origin of the curve
+     * @param handler ExtremumHandler
+     * @return int number of extrema reported
+     */
+    public int find(HarmonicCurve station, double fromHours, double toHours, ExtremumHandler handler) {
+        int cells = (int) Math.ceil((toHours - fromHours) / gridHours);
+        if (cells <= 0) {
+            return 0;
+        }
+        double[] slopes = new double[Math.min(cells, GRID_BLOCK) + 1];
+        int found = 0;
+        for (int first = 0; first < cells; first += GRID_BLOCK) {
+            int block = Math.min(GRID_BLOCK, cells - first);
+            double blockStart = fromHours + first * gridHours;
+            station.getSlopes(slopes, 0, block + 1, blockStart, gridHours);
+            for (int i = 0; i < block; i++) {
+                double a = blockStart + i * gridHours;
+                double b = Math.min(a + gridHours, toHours);
+                double fa = slopes[i];
+                double fb = i + 1 == block ? station.getSlope(b) : slopes[i + 1];
+                TideType type = fa > 0 && fb <= 0 ? TideType.HW : fa < 0 && fb >= 0 ? TideType.LW : null;
+                if (type != null) {
+                    double hours = fb == 0 ? b : root(station, a, b, fa, fb);
+                    if (hours >= fromHours && hours < toHours) {
+                        handler.extremum(hours, station.getWaterHeight(hours), type);
+                        found++;
+                    }
+                }
+            }
+        }
+        Metrics.increment(Metric.EXTREMA_FOUND, found);
+        return found;
+    }
+
+    // Brent's method on the slope, f(a) and f(b) of opposite signs
+    private static double root(HarmonicCurve station, double a, double b, double fa, double fb) {
+        double c = a;
+        double fc = fa;
+        double d = b - a;
+        double e = d;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if ((fb > 0 && fc > 0) || (fb < 0 && fc < 0)) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+            double tolerance = 2 * Math.ulp(b) + 0.5 * TOLERANCE_HOURS;
+            double middle = 0.5 * (c - b);
+            if (Math.abs(middle) <= tolerance || fb == 0) {
+                return b;
+            }
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+                double s = fb / fa;
+                double p;
+                double q;
+                if (a == c) {
+                    // secant
+                    p = 2 * middle * s;
+                    q = 1 - s;
+                } else {
+                    // inverse quadratic interpolation
+                    double r = fb / fc;
+                    double t = fa / fc;
+                    p = s * (2 * middle * t * (t - r) - (b - a) * (r - 1));
+                    q = (t - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                } else {
+                    p = -p;
+                }
+                if (2 * p < Math.min(3 * middle * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = middle;
+                    e = d;
+                }
+            } else {
+                d = middle;
+                e = d;
+            }
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tolerance ? d : (middle > 0 ? tolerance : -tolerance);
+            fb = station.getSlope(b);
+        }
+        return b;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.github.jtides.services;
+
+/**
+ * Predicted water height (or current) of a station as a function of the hours since a time origin, what
+ * {@link ExtremaFinder} searches: a {@link CompiledStation} for one year, or two of them mixed around Jan 1st.
+ */
+public interface HarmonicCurve {
+
+    /**
+     * @param epochSecond long
+     * @return double hours since the time origin
+     */
+    double getHours(long epochSecond);
+
+    /**
+     * @param hours double since the time origin
+     * @return long epoch millisecond
+     */
+    long getEpochMilli(double hours);
+
+    /**
+     * @param hours double since the time origin
+     * @return double water height (or current speed) in the station unit
+     */
+    double getWaterHeight(double hours);
+
+    /**
+     * @param values double[]
+     * @param offset int first index written
+     * @param count int number of samples
+     * @param startHours double first sample
+     * @param stepHours double between two samples
+     */
+    void getWaterHeights(double[] values, int offset, int count, double startHours, double stepHours);
+
+    /**
+     * @param hours double since the time origin
+     * @return double time derivative, same sign as the derivative of the water height
+     */
+    double getSlope(double hours);
+
+    /**
+     * @param values double[]
+     * @param offset int first index written
+     * @param count int number of samples
+     * @param startHours double first sample
+     * @param stepHours double between two samples
+     */
+    void getSlopes(double[] values, int offset, int count, double startHours, double stepHours);
+
+}
@@ -0,0 +1,153 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.CacheStats;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.util.BoundedCache;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.github.jtides.util.TideUtilities.MAX_POS;
+import static com.github.jtides.util.TideUtilities.MIN_POS;
+
+/**
+ * Lowest and highest water heights (or currents) over a period, typically to scale a chart.
+ * The values are the true extrema of the predicted curve (see {@link ExtremaFinder}) and the curve ends,
+ * not samples. The period is cut in chunks of about a month searched in parallel,
+ * annual results are kept per (station, year).
+ */
+public class MinMaxCalculator {
+
+    public final static int DEFAULT_CACHE_SIZE = 256;
+    public final static double CHUNK_HOURS = 31 * 24D;
+
+    private final TideCalculator tideCalculator;
+    private final ExtremaFinder extremaFinder = new ExtremaFinder();
+    private final ForkJoinPool pool;
+    private final BoundedCache<StationYear, double[]> annual;
+
+    public MinMaxCalculator(TideCalculator tideCalculator) {
+        this(tideCalculator, ForkJoinPool.commonPool(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param tideCalculator TideCalculator
+     * @param pool ForkJoinPool the chunks are searched in
+     * @param cacheSize int max number of (station, year) results kept
+     */
+    public MinMaxCalculator(TideCalculator tideCalculator, ForkJoinPool pool, int cacheSize) {
+        this.tideCalculator = tideCalculator;
+        this.pool = pool;
+        this.annual = new BoundedCache<>(cacheSize);
+    }
+
+    /**
+     * @param location String station full name or name part
+     * @param year int from Jan 1st 00:00 to Dec 31st 24:00, station local time
+     * @return double[] {min, max}, see {@link com.github.jtides.util.TideUtilities#MIN_POS}
+     */
+    public double[] getMinMaxWH(String location, int year) {
+        TideStation station = tideCalculator.findStation(location);
+        double[] minMax = annual.get(new StationYear(station, year), key -> {
+            ZoneId zone = key.station.getZoneId();
+            return getMinMaxWH(key.station, LocalDate.of(key.year, 1, 1).atStartOfDay(zone),
+                    LocalDate.of(key.year + 1, 1, 1).atStartOfDay(zone));
+        });
+        return minMax.clone();
+    }
+
+    /**
+     * @param location String station full name or name part
+     * @param from LocalDateTime station local time
+     * @param to LocalDateTime station local time, included
+     * @return double[] {min, max}, see {@link com.github.jtides.util.TideUtilities#MIN_POS}
+     */
+    public double[] getMinMaxWH(String location, LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Invalid period: " + from + " - " + to);
+        }
+        TideStation station = tideCalculator.findStation(location);
+        ZoneId zone = station.getZoneId();
+        return getMinMaxWH(station, from.atZone(zone), to.atZone(zone));
+    }
+
+    public CacheStats getCacheStats() {
+        return annual.getStats();
+    }
+
+    private double[] getMinMaxWH(TideStation station, ZonedDateTime from, ZonedDateTime to) {
+        double[] minMax = {Double.MAX_VALUE, -Double.MAX_VALUE};
+        List<Extrema> tasks = new ArrayList<>();
+        long last = to.toEpochSecond();
+        long at = from.toEpochSecond();
+        do {
+            TideCalculator.Segment segment = tideCalculator.getSegment(station, at);
+            HarmonicCurve curve = segment.curve;
+            long segmentEnd = Math.min(last, segment.end);
+            double start = curve.getHours(at);
+            double end = curve.getHours(segmentEnd);
+            add(minMax, curve.getWaterHeight(start));
+            add(minMax, curve.getWaterHeight(end));
+            if (start < end) {
+                tasks.add(new Extrema(curve, start, end));
+            }
+            at = segmentEnd;
+        } while (at < last);
+        for (Extrema task : tasks) {
+            pool.execute(task);
+        }
+        for (Extrema task : tasks) {
+            merge(minMax, task.join());
+        }
+        return minMax;
+    }
+
+    private static void add(double[] minMax, double value) {
+        minMax[MIN_POS] = Math.min(minMax[MIN_POS], value);
+        minMax[MAX_POS] = Math.max(minMax[MAX_POS], value);
+    }
+
+    private static void merge(double[] minMax, double[] other) {
+        minMax[MIN_POS] = Math.min(minMax[MIN_POS], other[MIN_POS]);
+        minMax[MAX_POS] = Math.max(minMax[MAX_POS], other[MAX_POS]);
+    }
+
+    /**
+     * Min and max of the extrema in [from, to), cut in halves down to {@link #CHUNK_HOURS}
+     */
+    private class Extrema extends RecursiveTask<double[]> {
+        private final static long serialVersionUID = 1L;
+
+        private final HarmonicCurve curve;
+        private final double from;
+        private final double to;
+
+        private Extrema(HarmonicCurve curve, double from, double to) {
+            this.curve = curve;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= CHUNK_HOURS) {
+                double[] minMax = {Double.MAX_VALUE, -Double.MAX_VALUE};
+                extremaFinder.find(curve, from, to, (hours, value, type) -> add(minMax, value));
+                return minMax;
+            }
+            double middle = from + (to - from) / 2;
+            Extrema second = new Extrema(curve, middle, to);
+            second.fork();
+            double[] minMax = new Extrema(curve, from, middle).compute();
+            merge(minMax, second.join());
+            return minMax;
+        }
+    }
+
+}
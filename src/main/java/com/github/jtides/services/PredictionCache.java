@@ -0,0 +1,324 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.CacheStats;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideSeries;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.util.BoundedCache;
+import com.github.jtides.util.Metric;
+import com.github.jtides.util.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Daily predictions kept in front of {@link TideCalculator}, keyed by (station, day, mode): most requests are
+ * today or tomorrow for a popular station.
+ *
+ * Memory tier: for each station (second chance eviction over stations, see {@link BoundedCache}) a direct-mapped
+ * table of daysPerStation days, a day replaces the one at its position.
+ * Disk tier, optional: the high and low waters of whole station-years in a {@link DailyExtremaStore}, filled a year
+ * at a time on a miss and kept across restarts. It is named by the {@value #STORE_PROPERTY} system property,
+ * {@value #STORE_SLOTS_PROPERTY} sets its number of station-years. Its station-years are keyed by the station data
+ * and by {@link #getDataVersion(TideCalculator)}, which changes with the constituents data and {@value #ALGORITHM_VERSION}.
+ *
+ * Hits return the cached series, which are immutable. {@link #getHighAndLowTides(String, LocalDate, long[], double[], byte[])}
+ * copies into the caller arrays and allocates nothing on a hit of either tier.
+ * Thread safe.
+ */
+public class PredictionCache {
+
+    public enum Mode {
+        /** High and low waters of the day, see {@link TideCalculator#getHighAndLowTideSeries(String, LocalDate, LocalDate)} */
+        HIGH_LOW,
+        /** Water heights every hour of the day, see {@link TideCalculator#getTideSeries(String, LocalDate, LocalDate, int)} */
+        HOURLY
+    }
+
+    public final static String STORE_PROPERTY = "jtides.extrema.store";
+    public final static String STORE_SLOTS_PROPERTY = "jtides.extrema.store.slots";
+    public final static int DEFAULT_STATION_COUNT = 256;
+    public final static int DEFAULT_DAYS_PER_STATION = 16;
+    /** Version of the computed high and low waters, to increase when they change for the same data */
+    public final static int ALGORITHM_VERSION = 1;
+
+    private final static Mode[] MODES = Mode.values();
+
+    private final TideCalculator tideCalculator;
+    private final BoundedCache<TideStation, DayTable> stations;
+    private final Function<TideStation, DayTable> newTable;
+    private final DailyExtremaStore store;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Default sizes, with the disk tier named by the {@value #STORE_PROPERTY} system property when set
+     * @param tideCalculator TideCalculator
+     */
+    public PredictionCache(TideCalculator tideCalculator) {
+        this(tideCalculator, DEFAULT_STATION_COUNT, DEFAULT_DAYS_PER_STATION, storeFromProperty(getDataVersion(tideCalculator)));
+    }
+
+    /**
+     * @param tideCalculator TideCalculator
+     * @param stationCount int max number of stations held in memory
+     * @param daysPerStation int days held in memory for each station, rounded up to a power of two
+     * @param store DailyExtremaStore disk tier of the high and low waters, null for none
+     * @throws IllegalArgumentException when the store is not opened with {@link #getDataVersion(TideCalculator)}
+     */
+    public PredictionCache(TideCalculator tideCalculator, int stationCount, int daysPerStation, DailyExtremaStore store) {
+        if (daysPerStation <= 0 || daysPerStation > 1 << 16) {
+            throw new IllegalArgumentException("Days per station must be between 1 and 65536: " + daysPerStation);
+        }
+        if (store != null && store.getDataVersion() != getDataVersion(tideCalculator)) {
+            throw new IllegalArgumentException("Extrema store opened for data version " + store.getDataVersion() + ", not " + getDataVersion(tideCalculator));
+        }
+        this.tideCalculator = tideCalculator;
+        this.stations = new BoundedCache<>(stationCount);
+        int size = Integer.highestOneBit(daysPerStation * MODES.length - 1) << 1;
+        // the data version is read again for each station: the constituents change on a reload
+        this.newTable = station -> new DayTable(fingerprint(station, getDataVersion(tideCalculator)), size);
+        this.store = store;
+    }
+
+    /**
+     * @param location String station full name or name part
+     * @param day LocalDate station local day
+     * @param mode Mode
+     * @return TideSeries shared, immutable
+     */
+    public TideSeries get(String location, LocalDate day, Mode mode) {
+        return get(tideCalculator.findStation(location), day, mode);
+    }
+
+    /**
+     * The high and low waters of a day in the caller arrays, at most times.length of them
+     * @param location String station full name or name part
+     * @param day LocalDate station local day
+     * @param times long[] epoch milliseconds
+     * @param values double[]
+     * @param types byte[] {@link TideSeries#typeCode}
+     * @return int number of high and low waters of the day
+     */
+    public int getHighAndLowTides(String location, LocalDate day, long[] times, double[] values, byte[] types) {
+        TideStation station = tideCalculator.findStation(location);
+        DayTable table = stations.get(station, newTable);
+        TideSeries series = table.get(day.toEpochDay(), Mode.HIGH_LOW);
+        if (series == null) {
+            misses.increment();
+            if (store != null) {
+                int count = store.read(table.key, day.getYear(), day.getDayOfYear(), times, values, types);
+                if (count >= 0) {
+                    Metrics.increment(Metric.PREDICTION_STORE_HIT);
+                    return count;
+                }
+            }
+            series = load(station, table, day, Mode.HIGH_LOW);
+        } else {
+            hit();
+        }
+        int copied = Math.min(series.size(), Math.min(times.length, Math.min(values.length, types.length)));
+        for (int i = 0; i < copied; i++) {
+            times[i] = series.getEpochMilli(i);
+            values[i] = series.getValue(i);
+            types[i] = series.getTypeCode(i);
+        }
+        return series.size();
+    }
+
+    /**
+     * Computes the days ahead of the requests: whole station-years go to the disk tier, the days to the memory tier
+     * (which keeps the last daysPerStation of each station)
+     * @param locations Collection<String> station full names or name parts
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @param mode Mode
+     */
+    public void warmUp(Collection<String> locations, LocalDate from, LocalDate to, Mode mode) {
+        for (String location : locations) {
+            TideStation station = tideCalculator.findStation(location);
+            if (mode == Mode.HIGH_LOW && store != null) {
+                long key = stations.get(station, newTable).key;
+                for (int year = from.getYear(); year <= to.getYear(); year++) {
+                    if (!store.contains(key, year)) {
+                        storeYear(station, key, year);
+                    }
+                }
+            }
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                get(station, day, mode);
+            }
+        }
+    }
+
+    /**
+     * Empties the memory tier, see {@link DailyExtremaStore#clear()} for the disk one
+     */
+    public void clear() {
+        stations.clear();
+    }
+
+    /**
+     * @return DailyExtremaStore disk tier, null when there is none
+     */
+    public DailyExtremaStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return CacheStats memory tier: days found or not, days and stations evicted, stations held
+     */
+    public CacheStats getCacheStats() {
+        CacheStats held = stations.getStats();
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum() + held.getEvictions(), held.getSize());
+    }
+
+    TideSeries get(TideStation station, LocalDate day, Mode mode) {
+        DayTable table = stations.get(station, newTable);
+        long epochDay = day.toEpochDay();
+        TideSeries series = table.get(epochDay, mode);
+        if (series != null) {
+            hit();
+            return series;
+        }
+        misses.increment();
+        return load(station, table, day, mode);
+    }
+
+    private TideSeries load(TideStation station, DayTable table, LocalDate day, Mode mode) {
+        TideSeries series = mode == Mode.HIGH_LOW ? loadHighAndLowTides(station, table.key, day) : null;
+        if (series == null) {
+            Metrics.increment(Metric.PREDICTION_CACHE_MISS);
+            series = mode == Mode.HIGH_LOW ? tideCalculator.getHighAndLowTideSeries(station, day, day) : tideCalculator.getTideSeries(station, day, day, 60);
+        }
+        if (table.put(day.toEpochDay(), mode, series)) {
+            evictions.increment();
+        }
+        return series;
+    }
+
+    // from the disk tier, null without one or for a day with more extrema than a record holds
+    private TideSeries loadHighAndLowTides(TideStation station, long key, LocalDate day) {
+        if (store != null) {
+            long[] times = new long[DailyExtremaStore.MAX_PER_DAY];
+            double[] values = new double[times.length];
+            byte[] types = new byte[times.length];
+            int count = store.read(key, day.getYear(), day.getDayOfYear(), times, values, types);
+            if (count < 0 && !store.contains(key, day.getYear())) {
+                storeYear(station, key, day.getYear());
+                count = store.read(key, day.getYear(), day.getDayOfYear(), times, values, types);
+            }
+            if (count >= 0) {
+                Metrics.increment(Metric.PREDICTION_STORE_HIT);
+                return new TideSeries(station.getZoneId(), times, values, types, 0, count);
+            }
+        }
+        return null;
+    }
+
+    private void storeYear(TideStation station, long key, int year) {
+        ZoneClock clock = ZoneClock.of(station.getZoneId());
+        LocalDate first = LocalDate.of(year, 1, 1);
+        long[] dayStarts = new long[first.lengthOfYear() + 1];
+        for (int i = 0; i < dayStarts.length; i++) {
+            dayStarts[i] = clock.getDayStart(first.plusDays(i)) * 1000L;
+        }
+        store.write(key, year, dayStarts, tideCalculator.getHighAndLowTideSeries(station, first, LocalDate.of(year, 12, 31)));
+    }
+
+    private void hit() {
+        hits.increment();
+        Metrics.increment(Metric.PREDICTION_CACHE_HIT);
+    }
+
+    /**
+     * @param tideCalculator TideCalculator
+     * @return long non zero hash of the constituents data and of {@value #ALGORITHM_VERSION}, stable across restarts
+     */
+    public static long getDataVersion(TideCalculator tideCalculator) {
+        return mix(31L * ALGORITHM_VERSION + tideCalculator.getTideService().getConstituents().getFingerprint());
+    }
+
+    /**
+     * @param station TideStation
+     * @param dataVersion long see {@link #getDataVersion(TideCalculator)}
+     * @return long non zero hash of what the predictions of the station depend on, stable across restarts
+     */
+    static long fingerprint(TideStation station, long dataVersion) {
+        long hash = dataVersion;
+        hash = 31L * hash + station.getFullName().hashCode();
+        hash = 31L * hash + String.valueOf(station.getTimeZone()).hashCode();
+        hash = 31L * hash + String.valueOf(station.getUnit()).hashCode();
+        hash = 31L * hash + Double.doubleToLongBits(station.getBaseHeight());
+        for (Harmonic harmonic : station.getHarmonics()) {
+            hash = 31L * hash + harmonic.getName().hashCode();
+            hash = 31L * hash + Double.doubleToLongBits(harmonic.getAmplitude());
+            hash = 31L * hash + Double.doubleToLongBits(harmonic.getEpoch());
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash == 0L ? 1L : hash;
+    }
+
+    private static DailyExtremaStore storeFromProperty(long dataVersion) {
+        String file = System.getProperty(STORE_PROPERTY);
+        if (file == null || file.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return DailyExtremaStore.open(Paths.get(file.trim()), Integer.getInteger(STORE_SLOTS_PROPERTY, DailyExtremaStore.DEFAULT_SLOT_COUNT), dataVersion);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // days of one station, a (day, mode) goes to one position
+    private static class DayTable {
+        private final long key;
+        private final AtomicReferenceArray<Day> days;
+
+        private DayTable(long key, int size) {
+            this.key = key;
+            this.days = new AtomicReferenceArray<>(size);
+        }
+
+        private TideSeries get(long epochDay, Mode mode) {
+            Day day = days.get(index(epochDay, mode));
+            return day != null && day.epochDay == epochDay && day.mode == mode ? day.series : null;
+        }
+
+        // true when another day is replaced
+        private boolean put(long epochDay, Mode mode, TideSeries series) {
+            Day previous = days.getAndSet(index(epochDay, mode), new Day(epochDay, mode, series));
+            return previous != null && (previous.epochDay != epochDay || previous.mode != mode);
+        }
+
+        private int index(long epochDay, Mode mode) {
+            return (int) ((epochDay * MODES.length + mode.ordinal()) & (days.length() - 1));
+        }
+    }
+
+    private static class Day {
+        private final long epochDay;
+        private final Mode mode;
+        private final TideSeries series;
+
+        private Day(long epochDay, Mode mode, TideSeries series) {
+            this.epochDay = epochDay;
+            this.mode = mode;
+            this.series = series;
+        }
+    }
+
+}
@@ -77,16 +77,16 @@ public class SpeedConstituentFinder extends DefaultHandler {
         }
 
         if ("equilibrium".equals(qName)) {
-            constituent.getEquilibrium().put(year, value);
+            constituent.putEquilibrium(year, value);
             foundEquilibrium = false;
         } else if ("factor".equals(qName)) {
-            constituent.getFactors().put(year, value);
+            constituent.putFactor(year, value);
             foundFactor = false;
         }
     }
 
     public void characters(char[] chars, int start, int length) {
-        String result = new String(chars).substring(start, start + length).trim();
+        String result = new String(chars, start, length).trim();
         if (foundCoeffName)
             coeffName = result;
         else if (foundCoeffValue)
@@ -0,0 +1,185 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable name lookup over the loaded stations, built once at load time.
+ * A name is resolved, in order, as an exact full name, an exact name part, a normalized full name
+ * and a normalized name part (case, accents and extra white space ignored).
+ * When several stations share a name part the first one by full name wins, see {@link #getCandidates(String)}.
+ */
+public class StationIndex {
+
+    private final static Pattern MARKS = Pattern.compile("\\p{M}+");
+    private final static Pattern SPACES = Pattern.compile("\\s+");
+    private final static Comparator<TideStation> BY_FULL_NAME = Comparator.comparing(TideStation::getFullName);
+
+    private final Map<String, TideStation> byFullName;
+    private final Map<String, List<TideStation>> byNamePart;
+    private final Map<String, List<TideStation>> byNormalizedName;
+    private final Map<String, List<TideStation>> byNormalizedPart;
+    private final String[] prefixKeys;
+    private final TideStation[] prefixStations;
+
+    public StationIndex(Collection<TideStation> stations) {
+        List<TideStation> sorted = new ArrayList<>(stations);
+        sorted.sort(BY_FULL_NAME);
+
+        Map<String, TideStation> fullNames = new HashMap<>(sorted.size() * 2);
+        Map<String, List<TideStation>> nameParts = new HashMap<>();
+        Map<String, List<TideStation>> normalizedNames = new HashMap<>(sorted.size() * 2);
+        Map<String, List<TideStation>> normalizedParts = new HashMap<>();
+        List<Object[]> prefixEntries = new ArrayList<>(sorted.size() * 4);
+
+        for (TideStation station : sorted) {
+            fullNames.putIfAbsent(station.getFullName(), station);
+            String normalizedName = normalize(station.getFullName());
+            add(normalizedNames, normalizedName, station);
+            prefixEntries.add(new Object[]{normalizedName, station});
+            for (String part : station.getNameParts()) {
+                add(nameParts, part, station);
+                String normalizedPart = normalize(part);
+                add(normalizedParts, normalizedPart, station);
+                if (!normalizedPart.equals(normalizedName)) {
+                    prefixEntries.add(new Object[]{normalizedPart, station});
+                }
+            }
+        }
+        prefixEntries.sort(Comparator.comparing(entry -> (String) entry[0]));
+
+        this.byFullName = fullNames;
+        this.byNamePart = freeze(nameParts);
+        this.byNormalizedName = freeze(normalizedNames);
+        this.byNormalizedPart = freeze(normalizedParts);
+        this.prefixKeys = new String[prefixEntries.size()];
+        this.prefixStations = new TideStation[prefixEntries.size()];
+        for (int i = 0; i < prefixKeys.length; i++) {
+            prefixKeys[i] = (String) prefixEntries.get(i)[0];
+            prefixStations[i] = (TideStation) prefixEntries.get(i)[1];
+        }
+    }
+
+    /**
+     * Lower case, accents stripped, white space trimmed and collapsed
+     * @param name String
+     * @return String
+     */
+    public static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        String stripped = MARKS.matcher(decomposed).replaceAll("");
+        return SPACES.matcher(stripped.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name String full name or name part
+     * @return TideStation or null when nothing matches
+     */
+    public TideStation find(String name) {
+        // exact full names, most lookups, without the candidate list
+        TideStation station = name == null ? null : byFullName.get(name);
+        if (station != null) {
+            return station;
+        }
+        List<TideStation> candidates = getCandidates(name);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * All stations matching the first rule that matches the name, sorted by full name.
+     * More than one element means the name is ambiguous.
+     * @param name String full name or name part
+     * @return List<TideStation>, empty when nothing matches
+     */
+    public List<TideStation> getCandidates(String name) {
+        if (name == null) {
+            return Collections.emptyList();
+        }
+        TideStation station = byFullName.get(name);
+        if (station != null) {
+            return Collections.singletonList(station);
+        }
+        List<TideStation> stations = byNamePart.get(name);
+        if (stations != null) {
+            return stations;
+        }
+        String normalized = normalize(name);
+        stations = byNormalizedName.get(normalized);
+        if (stations != null) {
+            return stations;
+        }
+        stations = byNormalizedPart.get(normalized);
+        return stations != null ? stations : Collections.<TideStation>emptyList();
+    }
+
+    public boolean isAmbiguous(String name) {
+        return getCandidates(name).size() > 1;
+    }
+
+    /**
+     * Stations whose normalized full name or one of its name parts starts with the normalized prefix,
+     * sorted by matching key then full name, each station listed once
+     * @param prefix String
+     * @param limit int maximum number of stations returned
+     * @return List<TideStation>
+     */
+    public List<TideStation> findByPrefix(String prefix, int limit) {
+        String key = normalize(prefix);
+        int from = lowerBound(key);
+        Set<TideStation> found = new LinkedHashSet<>();
+        for (int i = from; i < prefixKeys.length && found.size() < limit && prefixKeys[i].startsWith(key); i++) {
+            found.add(prefixStations[i]);
+        }
+        return new ArrayList<>(found);
+    }
+
+    // first key not before the given one, the first of equal keys (binarySearch returns any of them)
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = prefixKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefixKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void add(Map<String, List<TideStation>> map, String key, TideStation station) {
+        List<TideStation> stations = map.get(key);
+        if (stations == null) {
+            stations = new ArrayList<>(1);
+            map.put(key, stations);
+        }
+        if (stations.isEmpty() || stations.get(stations.size() - 1) != station) {
+            stations.add(station);
+        }
+    }
+
+    private static Map<String, List<TideStation>> freeze(Map<String, List<TideStation>> map) {
+        Map<String, List<TideStation>> frozen = new HashMap<>(map.size() * 2);
+        for (Map.Entry<String, List<TideStation>> entry : map.entrySet()) {
+            List<TideStation> stations = entry.getValue();
+            frozen.put(entry.getKey(), stations.size() == 1
+                    ? Collections.singletonList(stations.get(0))
+                    : Collections.unmodifiableList(stations));
+        }
+        return frozen;
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Maps every station name to the byte range of its &lt;station&gt; element in an uncompressed copy of stations.xml,
+ * so a single station is read with one positional read and a parse of a few KB instead of the whole archive.
+ */
+public class StationOffsetIndex {
+
+    private final static byte[] STATION_START = "<station ".getBytes(StandardCharsets.ISO_8859_1);
+    private final static byte[] STATION_END = "</station>".getBytes(StandardCharsets.ISO_8859_1);
+    private final static byte[] NAME_ATTRIBUTE = " name=\"".getBytes(StandardCharsets.ISO_8859_1);
+    private final static byte[] TAG_END = ">".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final Path file;
+    private final String[] names;
+    private final long[] starts;
+    private final int[] lengths;
+    private final Map<String, Integer> positions;
+
+    private StationOffsetIndex(Path file, String[] names, long[] starts, int[] lengths) {
+        this.file = file;
+        this.names = names;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.positions = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            positions.putIfAbsent(names[i], i);
+        }
+    }
+
+    /**
+     * Copies the stations document to the given file (unless a copy of the same size and CRC-32 is already there)
+     * and indexes it
+     * @param xml InputStream of stations.xml, not closed
+     * @param file Path of the uncompressed copy
+     * @param source long size and CRC-32 of stations.xml, see {@link XMLDataLoader#getSource(String)}
+     * @return StationOffsetIndex
+     * @throws IOException on read/write failure
+     */
+    public static StationOffsetIndex build(InputStream xml, Path file, long source) throws IOException {
+        if (!isCopyOf(file, source)) {
+            Path absolute = file.toAbsolutePath();
+            if (absolute.getParent() != null) {
+                Files.createDirectories(absolute.getParent());
+            }
+            Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                Files.copy(xml, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return scan(file);
+    }
+
+    private static boolean isCopyOf(Path file, long source) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != source >>> 32) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        return crc.getValue() == (source & 0xFFFFFFFFL);
+    }
+
+    private static StationOffsetIndex scan(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(file + " is too large to be indexed");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = buffer.limit();
+        int capacity = 4096;
+        String[] names = new String[capacity];
+        long[] starts = new long[capacity];
+        int[] lengths = new int[capacity];
+        int count = 0;
+
+        int position = indexOf(buffer, STATION_START, 0, size);
+        while (position >= 0) {
+            // the name attribute of this start tag, not of an element after it
+            int tagEnd = indexOf(buffer, TAG_END, position, size);
+            int nameStart = tagEnd < 0 ? -1 : indexOf(buffer, NAME_ATTRIBUTE, position, tagEnd);
+            int end = indexOf(buffer, STATION_END, position, size);
+            if (nameStart < 0 || end < 0) {
+                throw new IllegalStateException("Malformed station element at byte " + position + " of " + file);
+            }
+            nameStart += NAME_ATTRIBUTE.length;
+            int nameEnd = nameStart;
+            while (nameEnd < tagEnd && buffer.get(nameEnd) != '"') {
+                nameEnd++;
+            }
+            if (nameEnd == tagEnd) {
+                throw new IllegalStateException("Malformed station element at byte " + position + " of " + file);
+            }
+            end += STATION_END.length;
+
+            if (count == names.length) {
+                capacity *= 2;
+                names = Arrays.copyOf(names, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            names[count] = unescape(decode(buffer, nameStart, nameEnd));
+            starts[count] = position;
+            lengths[count] = end - position;
+            count++;
+            position = indexOf(buffer, STATION_START, end, size);
+        }
+        return new StationOffsetIndex(file,
+                Arrays.copyOf(names, count),
+                Arrays.copyOf(starts, count),
+                Arrays.copyOf(lengths, count));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Exact name lookup, falls back to the first station whose name contains the given one (same rule as {@link StationFinder})
+     * @param stationName String
+     * @return TideStation or null
+     */
+    public TideStation loadTideStation(String stationName) {
+        Integer position = positions.get(stationName);
+        if (position == null) {
+            for (int i = 0; i < names.length && position == null; i++) {
+                if (names[i].contains(stationName)) {
+                    position = i;
+                }
+            }
+        }
+        if (position == null) {
+            return null;
+        }
+        try {
+            byte[] xml = read(position);
+            TideStation[] station = new TideStation[1];
+            new XMLDataScanner(xml, 0, xml.length).readStations(s -> station[0] = s);
+            return station[0];
+        } catch (Exception ex) {
+            throw new IllegalStateException("Not able to read station " + names[position] + " from " + file, ex);
+        }
+    }
+
+    private byte[] read(int position) throws IOException {
+        byte[] bytes = new byte[lengths[position]];
+        ByteBuffer target = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long offset = starts[position];
+            while (target.hasRemaining()) {
+                int read = channel.read(target, offset + target.position());
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern, int from, int size) {
+        byte first = pattern[0];
+        int last = size - pattern.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) == first) {
+                int j = 1;
+                while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static String unescape(String s) {
+        if (s.indexOf('&') < 0) {
+            return s;
+        }
+        return s.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+}
@@ -0,0 +1,621 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.ConstSpeed;
+import com.github.jtides.models.Constituents;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideStation;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Compact binary copy of constituents.xml and stations.xml, read through a memory-mapped file.
+ * The snapshot is generated once from the XML (see {@link #main(String[])} or the
+ * {@value XMLDataLoader#SNAPSHOT_PROPERTY} system property) and replaces the SAX parse at startup.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header       int magic, int version, int nameCount, int constituentCount, int stationCount,
+ *              int constituentsOffset, int stationIndexOffset, int stationDataOffset,
+ *              long constituentsSource, long stationsSource    (see {@link XMLDataLoader#getSource(String)})
+ * names        nameCount x string                  (constituent / harmonic names, referenced by position)
+ * constituents constituentCount x (int idx, short nameRef, double speed, int firstYear, int years,
+ *                                  years x double equilibrium, years x double factor)   NaN = missing year
+ * index        stationCount x int                  (record offset relative to stationDataOffset, sorted by full name)
+ * stations     stationCount x (string fullName, short partCount, partCount x string,
+ *                              double latitude, double longitude, double baseHeight,
+ *                              string unit, string timeZone, string timeOffset,
+ *                              short harmonicCount, harmonicCount x (short nameRef, double amplitude, double epoch))
+ * string       short length + UTF-8 bytes
+ * </pre>
+ * Harmonic epochs are stored already converted to radians, exactly as {@link StationFinder} keeps them.
+ * The sources identify the XML entries the snapshot was generated from, a snapshot of other entries is regenerated.
+ *
+ * {@link #getStationViews()} gives flyweight stations reading their fields from the buffer, the harmonics are
+ * never held on the heap: a mapped file is shared by all the JVMs through the page cache,
+ * {@link #pack(Constituents, Collection)} builds the same layout in a direct buffer.
+ */
+public class StationSnapshot {
+
+    public final static int MAGIC = 0x4A544944;
+    public final static int VERSION = 2;
+
+    private final static int HEADER_SIZE = 8 * 4 + 2 * 8;
+    private final static int HARMONIC_SIZE = 2 + 8 + 8;
+
+    private final ByteBuffer buffer;
+    private final String[] names;
+    private final int constituentCount;
+    private final int stationCount;
+    private final int constituentsOffset;
+    private final int stationIndexOffset;
+    private final int stationDataOffset;
+    private final long constituentsSource;
+    private final long stationsSource;
+    private volatile Set<TideStation> views;
+
+    private StationSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a station snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported station snapshot version " + version + ", expected " + VERSION);
+        }
+        int nameCount = buffer.getInt(8);
+        this.constituentCount = buffer.getInt(12);
+        this.stationCount = buffer.getInt(16);
+        this.constituentsOffset = buffer.getInt(20);
+        this.stationIndexOffset = buffer.getInt(24);
+        this.stationDataOffset = buffer.getInt(28);
+        this.constituentsSource = buffer.getLong(32);
+        this.stationsSource = buffer.getLong(40);
+
+        this.names = new String[nameCount];
+        Reader reader = new Reader(HEADER_SIZE);
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = reader.string().intern();
+        }
+    }
+
+    /**
+     * Maps an existing snapshot file in read only mode
+     * @param file Path
+     * @return StationSnapshot
+     * @throws IOException if the file cannot be read
+     * @throws IllegalStateException if the file is not a snapshot of the current version
+     */
+    public static StationSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new StationSnapshot(mapped);
+        }
+    }
+
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * @param constituentsSource long see {@link XMLDataLoader#getSource(String)}
+     * @param stationsSource long see {@link XMLDataLoader#getSource(String)}
+     * @return boolean true when the snapshot was generated from these XML entries
+     */
+    public boolean isSnapshotOf(long constituentsSource, long stationsSource) {
+        return this.constituentsSource == constituentsSource && this.stationsSource == stationsSource;
+    }
+
+    public Constituents getConstituents() {
+        Constituents constituents = new Constituents();
+        Reader reader = new Reader(constituentsOffset);
+        for (int i = 0; i < constituentCount; i++) {
+            int idx = reader.i32();
+            String name = names[reader.u16()];
+            double speed = reader.f64();
+            int firstYear = reader.i32();
+            int years = reader.i32();
+            ConstSpeed constSpeed = new ConstSpeed(idx, name, speed);
+            for (int y = 0; y < years; y++) {
+                double value = reader.f64();
+                if (!Double.isNaN(value)) {
+                    constSpeed.putEquilibrium(firstYear + y, value);
+                }
+            }
+            for (int y = 0; y < years; y++) {
+                double value = reader.f64();
+                if (!Double.isNaN(value)) {
+                    constSpeed.putFactor(firstYear + y, value);
+                }
+            }
+            constituents.getConstSpeedMap().put(name, constSpeed);
+        }
+        return constituents;
+    }
+
+    public Set<TideStation> getTideStations() {
+        Set<TideStation> stations = new HashSet<>(stationCount * 2);
+        for (int i = 0; i < stationCount; i++) {
+            stations.add(readStation(i));
+        }
+        return stations;
+    }
+
+    /**
+     * Stations backed by the buffer: a few fields each on the heap, the name parts, units and harmonics are
+     * read on every call. Read only, the setters throw UnsupportedOperationException
+     * @return Set<TideStation> one view per station in full name order, same instances on every call
+     */
+    public Set<TideStation> getStationViews() {
+        Set<TideStation> stations = views;
+        if (stations == null) {
+            stations = new LinkedHashSet<>(stationCount * 2);
+            for (int i = 0; i < stationCount; i++) {
+                stations.add(new StationView(recordOffset(i)));
+            }
+            stations = Collections.unmodifiableSet(stations);
+            views = stations;
+        }
+        return stations;
+    }
+
+    /**
+     * Binary search on the full name, falls back to the first station whose name contains the given one
+     * (same rule as {@link StationFinder})
+     * @param stationName String
+     * @return TideStation or null
+     */
+    public TideStation getTideStation(String stationName) {
+        int low = 0;
+        int high = stationCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = readName(mid).compareTo(stationName);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return readStation(mid);
+            }
+        }
+        for (int i = 0; i < stationCount; i++) {
+            if (readName(i).contains(stationName)) {
+                return readStation(i);
+            }
+        }
+        return null;
+    }
+
+    private int recordOffset(int position) {
+        return stationDataOffset + buffer.getInt(stationIndexOffset + position * 4);
+    }
+
+    private String readName(int position) {
+        return new Reader(recordOffset(position)).string();
+    }
+
+    private TideStation readStation(int position) {
+        Reader reader = new Reader(recordOffset(position));
+        TideStation station = new TideStation();
+        station.setFullName(reader.string());
+        int parts = reader.u16();
+        for (int p = 0; p < parts; p++) {
+            station.getNameParts().add(reader.string());
+        }
+        station.setLatitude(reader.f64());
+        station.setLongitude(reader.f64());
+        station.setBaseHeight(reader.f64());
+        station.setUnit(reader.string());
+        station.setTimeZone(reader.string());
+        station.setTimeOffset(reader.string());
+        int harmonics = reader.u16();
+        List<Harmonic> list = station.getHarmonics();
+        for (int h = 0; h < harmonics; h++) {
+            String name = names[reader.u16()];
+            double amplitude = reader.f64();
+            double epoch = reader.f64();
+            list.add(new Harmonic(name, amplitude, epoch));
+        }
+        return station;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to the target and moves it in place,
+     * so concurrent readers never see a partial file.
+     * @param file Path
+     * @param constituents Constituents as loaded from XML
+     * @param stations Set<TideStation> as loaded from XML, harmonics not yet corrected
+     * @param constituentsSource long constituents.xml entry read, see {@link XMLDataLoader#getSource(String)}
+     * @param stationsSource long stations.xml entry read, see {@link XMLDataLoader#getSource(String)}
+     * @throws IOException on write failure
+     */
+    public static void write(Path file, Constituents constituents, Collection<TideStation> stations,
+                             long constituentsSource, long stationsSource) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            write(os, constituents, stations, constituentsSource, stationsSource);
+        }
+        try {
+            Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Same layout as {@link #write(Path, Constituents, Collection, long, long)}, in a direct buffer outside the Java heap,
+     * without sources
+     * @param constituents Constituents as loaded from XML
+     * @param stations Collection<TideStation> as loaded from XML, harmonics not yet corrected
+     * @return StationSnapshot
+     */
+    public static StationSnapshot pack(Constituents constituents, Collection<TideStation> stations) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            write(bytes, constituents, stations, 0L, 0L);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+        buffer.put(bytes.toByteArray());
+        ((Buffer) buffer).flip();
+        return new StationSnapshot(buffer);
+    }
+
+    private static void write(OutputStream os, Constituents constituents, Collection<TideStation> stations,
+                              long constituentsSource, long stationsSource) throws IOException {
+        Map<String, Integer> nameRefs = new LinkedHashMap<>();
+        for (ConstSpeed constSpeed : constituents.getConstSpeedMap().values()) {
+            nameRef(nameRefs, constSpeed.getCoeffName());
+        }
+        List<TideStation> sorted = new ArrayList<>(stations);
+        sorted.sort(Comparator.comparing(TideStation::getFullName));
+        for (TideStation station : sorted) {
+            for (Harmonic harmonic : station.getHarmonics()) {
+                nameRef(nameRefs, harmonic.getName());
+            }
+        }
+
+        Block names = new Block();
+        for (String name : nameRefs.keySet()) {
+            names.string(name);
+        }
+
+        Block constituentBlock = new Block();
+        for (ConstSpeed constSpeed : constituents.getConstSpeedMap().values()) {
+            int firstYear = constSpeed.getFirstYear();
+            int years = constSpeed.getLastYear() - firstYear + 1;
+            constituentBlock.out.writeInt(constSpeed.getIdx());
+            constituentBlock.out.writeShort(nameRefs.get(constSpeed.getCoeffName()));
+            constituentBlock.out.writeDouble(constSpeed.getCoeffValue());
+            constituentBlock.out.writeInt(years == 0 ? 0 : firstYear);
+            constituentBlock.out.writeInt(years);
+            for (int y = 0; y < years; y++) {
+                constituentBlock.out.writeDouble(constSpeed.getEquilibrium(firstYear + y));
+            }
+            for (int y = 0; y < years; y++) {
+                constituentBlock.out.writeDouble(constSpeed.getFactor(firstYear + y));
+            }
+        }
+
+        Block index = new Block();
+        Block data = new Block();
+        for (TideStation station : sorted) {
+            index.out.writeInt(data.out.size());
+            data.string(station.getFullName());
+            data.out.writeShort(station.getNameParts().size());
+            for (String part : station.getNameParts()) {
+                data.string(part);
+            }
+            data.out.writeDouble(station.getLatitude());
+            data.out.writeDouble(station.getLongitude());
+            data.out.writeDouble(station.getBaseHeight());
+            data.string(station.getUnit());
+            data.string(station.getTimeZone());
+            data.string(station.getTimeOffset());
+            data.out.writeShort(station.getHarmonics().size());
+            for (Harmonic harmonic : station.getHarmonics()) {
+                data.out.writeShort(nameRefs.get(harmonic.getName()));
+                data.out.writeDouble(harmonic.getAmplitude());
+                data.out.writeDouble(harmonic.getEpoch());
+            }
+        }
+
+        int constituentsOffset = HEADER_SIZE + names.out.size();
+        int stationIndexOffset = constituentsOffset + constituentBlock.out.size();
+        int stationDataOffset = stationIndexOffset + index.out.size();
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(nameRefs.size());
+        out.writeInt(constituents.getConstSpeedMap().size());
+        out.writeInt(sorted.size());
+        out.writeInt(constituentsOffset);
+        out.writeInt(stationIndexOffset);
+        out.writeInt(stationDataOffset);
+        out.writeLong(constituentsSource);
+        out.writeLong(stationsSource);
+        names.bytes.writeTo(out);
+        constituentBlock.bytes.writeTo(out);
+        index.bytes.writeTo(out);
+        data.bytes.writeTo(out);
+        out.flush();
+    }
+
+    private static void nameRef(Map<String, Integer> nameRefs, String name) {
+        if (!nameRefs.containsKey(name)) {
+            if (nameRefs.size() > 0xFFFF) {
+                throw new IllegalStateException("Too many harmonic names for a snapshot");
+            }
+            nameRefs.put(name, nameRefs.size());
+        }
+    }
+
+    /**
+     * Generates a snapshot from the bundled XML archive.
+     * Usage: java -cp jtides.jar com.github.jtides.services.StationSnapshot /path/to/stations.snapshot
+     * @param args target file
+     * @throws IOException on write failure
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: StationSnapshot <snapshot file>");
+            System.exit(1);
+        }
+        XMLDataLoader loader = new XMLDataLoader(null);
+        Constituents constituents = loader.loadConstituentsFromXml();
+        Set<TideStation> stations = loader.loadTideStationsFromXml();
+        write(Paths.get(args[0]), constituents, stations,
+                loader.getSource(XMLDataLoader.CONSTITUENTS_ENTRY), loader.getSource(XMLDataLoader.STATIONS_ENTRY));
+        System.out.println("Wrote " + stations.size() + " stations to " + args[0]);
+    }
+
+    /**
+     * Flyweight station: the record offsets, the full name and the zone are kept, the rest is read from the buffer
+     */
+    private class StationView extends TideStation {
+        private final String fullName;
+        private final int partsOffset;
+        private final int partCount;
+        private final int fieldsOffset;
+        private final int harmonicsOffset;
+        private final int harmonicCount;
+        private final ZoneId zoneId;
+
+        private StationView(int record) {
+            Reader reader = new Reader(record);
+            this.fullName = reader.string();
+            this.partCount = reader.u16();
+            this.partsOffset = reader.position;
+            for (int p = 0; p < partCount; p++) {
+                reader.skipString();
+            }
+            this.fieldsOffset = reader.position;
+            reader.position += 3 * 8;
+            reader.skipString();
+            this.zoneId = TimeZone.getTimeZone(reader.string()).toZoneId();
+            reader.skipString();
+            this.harmonicCount = reader.u16();
+            this.harmonicsOffset = reader.position;
+        }
+
+        @Override
+        public String getFullName() {
+            return fullName;
+        }
+
+        @Override
+        public List<String> getNameParts() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    if (index < 0 || index >= partCount) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + partCount);
+                    }
+                    Reader reader = new Reader(partsOffset);
+                    for (int p = 0; p < index; p++) {
+                        reader.skipString();
+                    }
+                    return reader.string();
+                }
+
+                @Override
+                public int size() {
+                    return partCount;
+                }
+            };
+        }
+
+        @Override
+        public double getLatitude() {
+            return buffer.getDouble(fieldsOffset);
+        }
+
+        @Override
+        public double getLongitude() {
+            return buffer.getDouble(fieldsOffset + 8);
+        }
+
+        @Override
+        public double getBaseHeight() {
+            return buffer.getDouble(fieldsOffset + 16);
+        }
+
+        @Override
+        public String getUnit() {
+            return new Reader(fieldsOffset + 24).string();
+        }
+
+        @Override
+        public String getTimeZone() {
+            Reader reader = new Reader(fieldsOffset + 24);
+            reader.skipString();
+            return reader.string();
+        }
+
+        @Override
+        public ZoneId getZoneId() {
+            return zoneId;
+        }
+
+        @Override
+        public String getTimeOffset() {
+            Reader reader = new Reader(fieldsOffset + 24);
+            reader.skipString();
+            reader.skipString();
+            return reader.string();
+        }
+
+        @Override
+        public List<Harmonic> getHarmonics() {
+            return new Harmonics();
+        }
+
+        @Override
+        public void setFullName(String fullName) {
+            throw new UnsupportedOperationException("Read only station: " + this.fullName);
+        }
+
+        @Override
+        public void setLatitude(double latitude) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setLongitude(double longitude) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setBaseHeight(double baseHeight) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setUnit(String unit) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setTimeZone(String timeZone) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setTimeOffset(String timeOffset) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        @Override
+        public void setHarmonicsFixedForYear(int y) {
+            throw new UnsupportedOperationException("Read only station: " + fullName);
+        }
+
+        // harmonic i is at harmonicsOffset + i * 18: short nameRef, double amplitude, double epoch
+        private class Harmonics extends AbstractList<Harmonic> implements RandomAccess {
+            @Override
+            public Harmonic get(int index) {
+                if (index < 0 || index >= harmonicCount) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", size: " + harmonicCount);
+                }
+                int position = harmonicsOffset + index * HARMONIC_SIZE;
+                return new Harmonic(names[buffer.getShort(position) & 0xFFFF],
+                        buffer.getDouble(position + 2), buffer.getDouble(position + 10));
+            }
+
+            @Override
+            public int size() {
+                return harmonicCount;
+            }
+        }
+    }
+
+    private static class Block {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private void string(String s) throws IOException {
+            byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalStateException("String too long for a snapshot: " + s);
+            }
+            out.writeShort(encoded.length);
+            out.write(encoded);
+        }
+    }
+
+    private class Reader {
+        private int position;
+
+        private Reader(int position) {
+            this.position = position;
+        }
+
+        private int i32() {
+            int v = buffer.getInt(position);
+            position += 4;
+            return v;
+        }
+
+        private int u16() {
+            int v = buffer.getShort(position) & 0xFFFF;
+            position += 2;
+            return v;
+        }
+
+        private double f64() {
+            double v = buffer.getDouble(position);
+            position += 8;
+            return v;
+        }
+
+        private void skipString() {
+            int length = u16();
+            position += length;
+        }
+
+        private String string() {
+            int length = u16();
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            ((Buffer) view).position(position);
+            view.get(bytes);
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
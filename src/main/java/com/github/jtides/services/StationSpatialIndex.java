@@ -0,0 +1,367 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Immutable k-d tree over the stations positions, built once at load time.
+ * Positions are kept as unit vectors, the straight (chord) distance between two of them grows with the
+ * great-circle distance, so the tree answers nearest/radius queries on the sphere without trigonometry in the loop.
+ * Bounding boxes are answered from a copy sorted by latitude.
+ */
+public class StationSpatialIndex {
+
+    public final static double EARTH_RADIUS_KM = 6371.0088D;
+
+    private final TideStation[] stations;
+    private final double[] vectors;
+    private final byte[] axes;
+
+    private final TideStation[] byLatitude;
+    private final double[] latitudes;
+
+    public StationSpatialIndex(Collection<TideStation> source) {
+        List<TideStation> sorted = new ArrayList<>(source);
+        sorted.sort(Comparator.comparing(TideStation::getFullName));
+        int n = sorted.size();
+        this.stations = sorted.toArray(new TideStation[n]);
+        this.vectors = new double[n * 3];
+        this.axes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            double[] v = toVector(stations[i].getLatitude(), stations[i].getLongitude());
+            System.arraycopy(v, 0, vectors, i * 3, 3);
+        }
+        build(0, n);
+
+        this.byLatitude = sorted.toArray(new TideStation[n]);
+        Arrays.sort(byLatitude, Comparator.comparingDouble(TideStation::getLatitude));
+        this.latitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = byLatitude[i].getLatitude();
+        }
+    }
+
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * @param latitude double decimal degrees
+     * @param longitude double decimal degrees
+     * @param k int max number of stations
+     * @param filter Predicate<TideStation> stations to consider
+     * @return List<TideStation> closest first
+     */
+    public List<TideStation> nearest(double latitude, double longitude, int k, Predicate<TideStation> filter) {
+        if (k <= 0 || stations.length == 0) {
+            return new ArrayList<>();
+        }
+        double[] q = toVector(latitude, longitude);
+        Neighbours neighbours = new Neighbours(Math.min(k, stations.length));
+        nearest(0, stations.length, q, filter, neighbours);
+        return neighbours.sorted();
+    }
+
+    /**
+     * @param latitude double decimal degrees
+     * @param longitude double decimal degrees
+     * @param radiusKm double great-circle distance
+     * @param filter Predicate<TideStation> stations to consider
+     * @return List<TideStation> closest first
+     */
+    public List<TideStation> withinRadius(double latitude, double longitude, double radiusKm, Predicate<TideStation> filter) {
+        double[] q = toVector(latitude, longitude);
+        double angle = Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        Neighbours neighbours = new Neighbours(16);
+        withinRadius(0, stations.length, q, chord * chord, filter, neighbours);
+        return neighbours.sorted();
+    }
+
+    /**
+     * When minLongitude is greater than maxLongitude the box crosses the anti-meridian
+     * @param minLatitude double
+     * @param minLongitude double
+     * @param maxLatitude double
+     * @param maxLongitude double
+     * @param filter Predicate<TideStation> stations to consider
+     * @return List<TideStation> sorted by latitude
+     */
+    public List<TideStation> inBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                                           Predicate<TideStation> filter) {
+        List<TideStation> found = new ArrayList<>();
+        int from = lowerBound(minLatitude);
+        boolean wraps = minLongitude > maxLongitude;
+        for (int i = from; i < byLatitude.length && latitudes[i] <= maxLatitude; i++) {
+            double lon = byLatitude[i].getLongitude();
+            boolean inside = wraps ? (lon >= minLongitude || lon <= maxLongitude) : (lon >= minLongitude && lon <= maxLongitude);
+            if (inside && filter.test(byLatitude[i])) {
+                found.add(byLatitude[i]);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Great-circle (haversine) distance
+     * @param latitude double decimal degrees
+     * @param longitude double decimal degrees
+     * @param station TideStation
+     * @return double kilometers
+     */
+    public static double distanceKm(double latitude, double longitude, TideStation station) {
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.toRadians(station.getLatitude());
+        double dLat = lat2 - lat1;
+        double dLon = Math.toRadians(station.getLongitude() - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1D, Math.sqrt(a)));
+    }
+
+    private void nearest(int lo, int hi, double[] q, Predicate<TideStation> filter, Neighbours neighbours) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d2 = distance2(mid, q);
+        if (d2 < neighbours.bound() && filter.test(stations[mid])) {
+            neighbours.offer(mid, d2);
+        }
+        double delta = q[axes[mid]] - coordinate(axes[mid], mid);
+        if (delta < 0) {
+            nearest(lo, mid, q, filter, neighbours);
+            if (delta * delta < neighbours.bound()) {
+                nearest(mid + 1, hi, q, filter, neighbours);
+            }
+        } else {
+            nearest(mid + 1, hi, q, filter, neighbours);
+            if (delta * delta < neighbours.bound()) {
+                nearest(lo, mid, q, filter, neighbours);
+            }
+        }
+    }
+
+    private void withinRadius(int lo, int hi, double[] q, double chord2, Predicate<TideStation> filter, Neighbours neighbours) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d2 = distance2(mid, q);
+        if (d2 <= chord2 && filter.test(stations[mid])) {
+            neighbours.add(mid, d2);
+        }
+        double delta = q[axes[mid]] - coordinate(axes[mid], mid);
+        if (delta <= 0 || delta * delta <= chord2) {
+            withinRadius(lo, mid, q, chord2, filter, neighbours);
+        }
+        if (delta >= 0 || delta * delta <= chord2) {
+            withinRadius(mid + 1, hi, q, chord2, filter, neighbours);
+        }
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = widestAxis(lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    private int widestAxis(int lo, int hi) {
+        int widest = 0;
+        double widestExtent = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = lo; i < hi; i++) {
+                double c = coordinate(axis, i);
+                min = Math.min(min, c);
+                max = Math.max(max, c);
+            }
+            if (max - min > widestExtent) {
+                widestExtent = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    // Hoare's selection, leaves the k-th smallest element on the axis at position k
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double pivot = coordinate(axis, (left + right) >>> 1);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(axis, i) < pivot) {
+                    i++;
+                }
+                while (coordinate(axis, j) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        TideStation station = stations[i];
+        stations[i] = stations[j];
+        stations[j] = station;
+        for (int axis = 0; axis < 3; axis++) {
+            double t = vectors[i * 3 + axis];
+            vectors[i * 3 + axis] = vectors[j * 3 + axis];
+            vectors[j * 3 + axis] = t;
+        }
+    }
+
+    private double coordinate(int axis, int i) {
+        return vectors[i * 3 + axis];
+    }
+
+    private double distance2(int i, double[] q) {
+        double dx = vectors[i * 3] - q[0];
+        double dy = vectors[i * 3 + 1] - q[1];
+        double dz = vectors[i * 3 + 2] - q[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int lowerBound(double latitude) {
+        int low = 0;
+        int high = latitudes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (latitudes[mid] < latitude) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double[] toVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        return new double[]{cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat)};
+    }
+
+    /**
+     * Positions and squared chord distances of the stations found so far,
+     * either a max-heap holding the best {@code capacity} ones (offer) or a growing list (add)
+     */
+    private class Neighbours {
+        private int[] positions;
+        private double[] distances;
+        private final int capacity;
+        private int size = 0;
+
+        private Neighbours(int capacity) {
+            this.capacity = capacity;
+            this.positions = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        private double bound() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        private void offer(int position, double distance) {
+            if (size < capacity) {
+                positions[size] = position;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                positions[0] = position;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        private void add(int position, double distance) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            positions[size] = position;
+            distances[size] = distance;
+            size++;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                exchange(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int largest = i;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (left + 1 < size && distances[left + 1] > distances[largest]) {
+                    largest = left + 1;
+                }
+                if (largest == i) {
+                    return;
+                }
+                exchange(i, largest);
+                i = largest;
+            }
+        }
+
+        private void exchange(int i, int j) {
+            int p = positions[i];
+            positions[i] = positions[j];
+            positions[j] = p;
+            double d = distances[i];
+            distances[i] = distances[j];
+            distances[j] = d;
+        }
+
+        private List<TideStation> sorted() {
+            // heap sort, the arrays are not used after this
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            int heapSize = size;
+            while (size > 1) {
+                exchange(0, --size);
+                siftDown(0);
+            }
+            List<TideStation> found = new ArrayList<>(heapSize);
+            for (int i = 0; i < heapSize; i++) {
+                found.add(stations[positions[i]]);
+            }
+            return found;
+        }
+    }
+
+}
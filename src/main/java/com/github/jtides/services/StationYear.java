@@ -0,0 +1,30 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+
+/**
+ * Cache key for per (station, year) results, the station is compared by identity
+ */
+class StationYear {
+    final TideStation station;
+    final int year;
+
+    StationYear(TideStation station, int year) {
+        this.station = station;
+        this.year = year;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StationYear)) {
+            return false;
+        }
+        StationYear other = (StationYear) o;
+        return station == other.station && year == other.year;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(station) + year;
+    }
+}
@@ -1,93 +1,344 @@
 package com.github.jtides.services;
 
-import com.github.jtides.models.Coefficient;
+import com.github.jtides.models.TideSeries;
 import com.github.jtides.models.TideStation;
 import com.github.jtides.models.TideType;
 import com.github.jtides.models.TimedValue;
-import com.github.jtides.util.TideUtilities;
+import com.github.jtides.util.Metric;
+import com.github.jtides.util.Metrics;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.github.jtides.models.TideType.FALLING;
 import static com.github.jtides.models.TideType.RISING;
 
 public class TideCalculator {
 
+    /** Around each Jan 1st 00:00 (local time), the two years are mixed over this duration, see {@link YearBlend} */
+    public final static long BLEND_SECONDS = 24 * 3600L;
+
     private final XMLTideStationService tideService;
+    private final ExtremaFinder extremaFinder = new ExtremaFinder();
 
     public TideCalculator(XMLTideStationService tideService){
         this.tideService = tideService;
     }
 
+    XMLTideStationService getTideService() {
+        return tideService;
+    }
+
     public List<TimedValue> getTides(String location, LocalDate now, int period) throws Exception {
+        return getTides(location, now, now, period);
+    }
 
-        List<TimedValue> tides = new LinkedList<>();
-        double previousWH = Double.NaN;
+    /**
+     * Water heights every period minutes from the start of the first day to the end of the last one,
+     * computed in one pass across months and years.
+     * The values are evenly spaced instants, not local clock times: hourly, a day has 23 values when the clocks go
+     * forward and 25 when they go back (the repeated local hour is there twice).
+     * @param location String station full name or name part
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @param period int minutes between two values
+     * @return List<TimedValue> chronological, HW/LW set on the value after each turning point
+     * @throws Exception on unknown station
+     */
+    public List<TimedValue> getTides(String location, LocalDate from, LocalDate to, int period) throws Exception {
+        return new ArrayList<>(getTideSeries(location, from, to, period).asList());
+    }
 
-        TideType trend = null;
-        TideStation ts = tideService.getTideStation(location, now.getYear());
-        List<Coefficient> constSpeed = tideService.getSiteConstSpeed();
+    /**
+     * Same as {@link #getTides(String, LocalDate, LocalDate, int)} in columns, a few MB for a year every minute,
+     * also 23 or 25 hourly values on the days the clocks change
+     * @param location String station full name or name part
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @param period int minutes between two values
+     * @return TideSeries chronological, HW/LW set on the value after each turning point
+     */
+    public TideSeries getTideSeries(String location, LocalDate from, LocalDate to, int period) {
+        return getTideSeries(findStation(location), from, to, period);
+    }
 
-        // Goes back 6 hours so we can calculate the tide type for midnight
-        LocalDateTime cal = now.atStartOfDay().minusMinutes(period);
+    TideSeries getTideSeries(TideStation station, LocalDate from, LocalDate to, int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        ZoneClock clock = ZoneClock.of(station.getZoneId());
+        long step = period * 60L;
+        long start = clock.getDayStart(from);
+        long end = clock.getDayStart(to.plusDays(1));
+        return getTideSeries(station, start, step, (int) Math.max(0, (end - start + step - 1) / step));
+    }
 
-        while (cal.getDayOfYear() <= now.getDayOfYear() && cal.getYear() <= now.getYear()) {
-            double wh = TideUtilities.getWaterHeight(ts, constSpeed, cal);
+    /**
+     * Water heights for count evenly spaced instants, with their tide types
+     * @param location String station full name or name part
+     * @param startEpochSecond long first instant
+     * @param stepSeconds long between two instants
+     * @param count int number of values
+     * @return TideSeries chronological, HW/LW set on the value after each turning point
+     */
+    public TideSeries getTideSeries(String location, long startEpochSecond, long stepSeconds, int count) {
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + stepSeconds);
+        }
+        return getTideSeries(findStation(location), startEpochSecond, stepSeconds, count);
+    }
 
-            TimedValue tide = new TimedValue(cal, wh);
-            tides.add(tide);
+    TideSeries getTideSeries(TideStation station, long start, long step, int count) {
+        long timer = Metrics.startTimer();
 
-            if (Double.isNaN(previousWH)) {
-                previousWH = wh;
+        // Goes back one step so we can calculate the tide type of the first value
+        int samples = count + 1;
+        long[] times = new long[samples];
+        double[] heights = new double[samples];
+        byte[] types = new byte[samples];
+        Arrays.fill(types, TideSeries.NO_TYPE);
+        getWaterHeights(station, heights, 0, samples, start - step, step);
+
+        TideType trend = null;
+        for (int i = 1; i < samples; i++) {
+            double previousWH = heights[i - 1];
+            double wh = heights[i];
+            times[i] = (start + (i - 1) * step) * 1000L;
+            if (trend == null) {
+                if (previousWH > wh) {
+                    trend = FALLING;
+                } else if (previousWH < wh) {
+                    trend = RISING;
+                }
+                types[i] = TideSeries.typeCode(trend);
             } else {
-                if (trend == null) {
-                    if (previousWH > wh) {
-                        trend = FALLING;
-                    } else if (previousWH < wh) {
-                        trend = RISING;
-                    }
-                    tide.setType(trend);
-                } else {
-                    switch (trend) {
-                        case RISING:
-                            if (previousWH > wh) // Now going down
-                            {
-                                tide.setType(TideType.HW);
-                                trend = FALLING; // Now falling
-                            }
-                            break;
-                        case FALLING:
-                            if (previousWH < wh) // Now going up
-                            {
-                                tide.setType(TideType.LW);
-                                trend = RISING; // Now rising
-                            }
-                            break;
-                        default: {
-                            tide.setType(trend);
-                            break;
+                switch (trend) {
+                    case RISING:
+                        if (previousWH > wh) // Now going down
+                        {
+                            types[i] = TideSeries.typeCode(TideType.HW);
+                            trend = FALLING; // Now falling
+                        }
+                        break;
+                    case FALLING:
+                        if (previousWH < wh) // Now going up
+                        {
+                            types[i] = TideSeries.typeCode(TideType.LW);
+                            trend = RISING; // Now rising
                         }
+                        break;
+                    default: {
+                        types[i] = TideSeries.typeCode(trend);
+                        break;
                     }
                 }
-                previousWH = wh;
             }
-            cal = cal.plusMinutes(period);
         }
 
-        return tides.stream().filter(tide -> tide.getCalendar().getDayOfYear() == now.getDayOfYear()).sorted().collect(Collectors.toList());
+        Metrics.record(Metric.SAMPLES_PER_REQUEST, samples);
+        Metrics.stopTimer(Metric.TIDES, timer);
+        return new TideSeries(station.getZoneId(), times, heights, types, 1, count);
+    }
+
+    /**
+     * Lazy water heights every period minutes from start, computed in small batches as the stream is consumed.
+     * The stream is unbounded (limit it), years past the table of constituents.xml are corrected with computed
+     * node factors and equilibrium arguments (see {@link com.github.jtides.util.AstronomicalArguments}).
+     * Parallel streams split the horizon, see {@link TideSpliterator}.
+     * @param location String station full name or name part
+     * @param start LocalDateTime station local time of the first value
+     * @param period int minutes between two values
+     * @return Stream<TimedValue> chronological, HW/LW set as in {@link #getTides(String, LocalDate, LocalDate, int)}
+     */
+    public Stream<TimedValue> streamTides(String location, LocalDateTime start, int period) {
+        return streamTides(location, start, period, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #streamTides(String, LocalDateTime, int)} with a known number of values, which splits evenly
+     * @param location String station full name or name part
+     * @param start LocalDateTime station local time of the first value
+     * @param period int minutes between two values
+     * @param count long number of values
+     * @return Stream<TimedValue>
+     */
+    public Stream<TimedValue> streamTides(String location, LocalDateTime start, int period, long count) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        TideStation station = findStation(location);
+        long first = ZoneClock.of(station.getZoneId()).toEpochSecond(start);
+        return StreamSupport.stream(new TideSpliterator(this, station, first, period * 60L, count), false);
+    }
+
+    /**
+     * @param location String station full name or name part
+     * @param epochSecond long
+     * @return double water height (or current) in the station unit
+     */
+    public double getWaterHeight(String location, long epochSecond) {
+        HarmonicCurve curve = getSegment(findStation(location), epochSecond).curve;
+        return curve.getWaterHeight(curve.getHours(epochSecond));
+    }
+
+    /**
+     * Water heights for count evenly spaced instants, each with the corrections of its local year,
+     * mixed with the next (or previous) year within {@link #BLEND_SECONDS} / 2 of Jan 1st
+     * @param location String station full name or name part
+     * @param startEpochSecond long first instant
+     * @param stepSeconds long between two instants
+     * @param count int number of values
+     * @return double[] in the station unit
+     */
+    public double[] getWaterHeights(String location, long startEpochSecond, long stepSeconds, int count) {
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + stepSeconds);
+        }
+        double[] heights = new double[count];
+        getWaterHeights(findStation(location), heights, 0, count, startEpochSecond, stepSeconds);
+        return heights;
+    }
+
+    /**
+     * @param location String station full name or name part
+     * @param year int
+     * @return CompiledStation ready to evaluate water heights for the year
+     */
+    public CompiledStation getCompiledStation(String location, int year) {
+        return getCompiledStation(findStation(location), year);
+    }
+
+    TideStation findStation(String location) {
+        TideStation station = tideService.getStationIndex().find(location);
+        Metrics.increment(station == null ? Metric.LOOKUP_MISS : Metric.LOOKUP_HIT);
+        if (station == null) {
+            throw new IllegalArgumentException("Unknown station: " + location);
+        }
+        return station;
+    }
+
+    CompiledStation getCompiledStation(TideStation station, int year) {
+        return tideService.getCompiledStation(station, year);
+    }
+
+    /**
+     * @param station TideStation
+     * @param at long epoch second
+     * @return Segment the curve at is evaluated with, and until when it applies
+     */
+    Segment getSegment(TideStation station, long at) {
+        ZoneClock clock = ZoneClock.of(station.getZoneId());
+        int year = clock.getYear(at);
+        long yearStart = clock.getYearStart(year);
+        long yearEnd = clock.getYearStart(year + 1);
+        long half = BLEND_SECONDS / 2;
+        if (at < yearStart + half) {
+            return blend(station, year - 1, yearStart - half, yearStart + half);
+        }
+        if (at >= yearEnd - half) {
+            return blend(station, year, yearEnd - half, yearEnd + half);
+        }
+        return new Segment(getCompiledStation(station, year), yearStart + half, yearEnd - half);
+    }
 
+    private Segment blend(TideStation station, int year, long start, long end) {
+        YearBlend curve = new YearBlend(getCompiledStation(station, year), getCompiledStation(station, year + 1), start, end);
+        return new Segment(curve, start, end);
+    }
+
+    // Fills heights[offset + i] for first + i * step (epoch seconds), each instant evaluated with the corrections of its own (local) year
+    void getWaterHeights(TideStation station, double[] heights, int offset, int count, long first, long step) {
+        Metrics.increment(Metric.SAMPLES_EVALUATED, count);
+        Metrics.stationPredictions(station.getFullName(), count);
+        int done = 0;
+        while (done < count) {
+            long at = first + done * step;
+            Segment segment = getSegment(station, at);
+            int samples = (int) Math.min(count - done, (segment.end - at + step - 1) / step);
+            segment.curve.getWaterHeights(heights, offset + done, samples, segment.curve.getHours(at), step * CompiledStation.HOURS_PER_SECOND);
+            done += samples;
+        }
     }
 
+    /**
+     * High and low waters of the day, at the exact turning points of the predicted curve (see {@link ExtremaFinder})
+     * @param location String station full name or name part
+     * @param day LocalDate
+     * @return List<TimedValue> chronological
+     * @throws Exception on unknown station
+     */
     public List<TimedValue> getHighAndLowTides(String location, LocalDate day) throws Exception {
-        return getTides(location, day, 1).stream().filter(tide -> isLowOrHighTide(tide)).collect(Collectors.toList());
+        return getHighAndLowTides(location, day, day);
+    }
+
+    /**
+     * High and low waters from the start of the first day to the end of the last one, in one pass across months and years
+     * @param location String station full name or name part
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @return List<TimedValue> chronological
+     * @throws Exception on unknown station
+     */
+    public List<TimedValue> getHighAndLowTides(String location, LocalDate from, LocalDate to) throws Exception {
+        return new ArrayList<>(getHighAndLowTideSeries(location, from, to).asList());
+    }
+
+    /**
+     * Same as {@link #getHighAndLowTides(String, LocalDate, LocalDate)} in columns
+     * @param location String station full name or name part
+     * @param from LocalDate first day
+     * @param to LocalDate last day, included
+     * @return TideSeries chronological, to the millisecond
+     */
+    public TideSeries getHighAndLowTideSeries(String location, LocalDate from, LocalDate to) {
+        return getHighAndLowTideSeries(findStation(location), from, to);
+    }
+
+    List<TimedValue> getHighAndLowTides(TideStation station, LocalDate from, LocalDate to) {
+        return new ArrayList<>(getHighAndLowTideSeries(station, from, to).asList());
+    }
+
+    TideSeries getHighAndLowTideSeries(TideStation station, LocalDate from, LocalDate to) {
+        long timer = Metrics.startTimer();
+        ZoneClock clock = ZoneClock.of(station.getZoneId());
+        long start = clock.getDayStart(from);
+        long end = clock.getDayStart(to.plusDays(1));
+        TideSeries.Builder tides = new TideSeries.Builder(station.getZoneId(), (int) Math.max(0, 4 * (to.toEpochDay() - from.toEpochDay() + 1)));
+        for (long at = start; at < end; ) {
+            Segment segment = getSegment(station, at);
+            HarmonicCurve curve = segment.curve;
+            long segmentEnd = Math.min(end, segment.end);
+            extremaFinder.find(curve, curve.getHours(at), curve.getHours(segmentEnd),
+                    (hours, value, type) -> tides.add(curve.getEpochMilli(hours), value, type));
+            at = segmentEnd;
+        }
+        Metrics.stationPredictions(station.getFullName(), tides.size());
+        Metrics.stopTimer(Metric.HIGH_LOW, timer);
+        return tides.build();
     }
 
     protected boolean isLowOrHighTide(TimedValue tide) {
         return tide.getType() != null && (tide.getType().equals(TideType.HW) || tide.getType().equals(TideType.LW));
     }
 
+    /**
+     * A curve and the epoch seconds [start, end) it applies to: one year away from Jan 1st, two years mixed around it
+     */
+    static final class Segment {
+        final HarmonicCurve curve;
+        final long start;
+        final long end;
+
+        Segment(HarmonicCurve curve, long start, long end) {
+            this.curve = curve;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
 }
@@ -0,0 +1,178 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.TideStation;
+import com.github.jtides.models.TideType;
+import com.github.jtides.models.TimedValue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static com.github.jtides.models.TideType.FALLING;
+import static com.github.jtides.models.TideType.RISING;
+
+/**
+ * Water heights at start + i * step for i in [0, count), computed {@value #BATCH} at a time as they are consumed,
+ * so memory does not grow with the horizon.
+ *
+ * A split hands the first part over and keeps the rest: half of a sized range, or for a stream without end a prefix
+ * of whole batches growing by {@value #SPLIT_UNIT} values at each split up to {@value #MAX_SPLIT} (as
+ * {@link java.util.Spliterators.AbstractSpliterator} does), so the split points stay close to the values consumed.
+ * The part kept rebuilds the rising/falling trend from the two samples before its first value,
+ * so HW/LW are set as if the values were consumed in one go.
+ */
+public class TideSpliterator implements Spliterator<TimedValue> {
+
+    public final static int BATCH = 512;
+    public final static int SPLIT_UNIT = 2 * BATCH;
+    public final static int MAX_SPLIT = 1 << 25;
+
+    // last instant with a LocalDateTime in every zone
+    private final static long MAX_EPOCH_SECOND = LocalDateTime.MAX.toEpochSecond(ZoneOffset.MAX);
+
+    private final TideCalculator calculator;
+    private final TideStation station;
+    private final ZoneClock clock;
+    private final long start;
+    private final long step;
+
+    private long index;
+    private long fence;
+    private final boolean sized;
+    private int splitSize;
+
+    private double[] values;
+    private long bufferStart;
+    private int bufferCount;
+
+    private double previousWH = Double.NaN;
+    private TideType trend;
+
+    /**
+     * @param calculator TideCalculator giving the compiled station of each year
+     * @param station TideStation as loaded
+     * @param start long epoch second of the first value
+     * @param stepSeconds long between two values
+     * @param count long number of values, Long.MAX_VALUE for no end
+     */
+    public TideSpliterator(TideCalculator calculator, TideStation station, long start, long stepSeconds, long count) {
+        this(calculator, station, start, stepSeconds, 0, count, count != Long.MAX_VALUE);
+    }
+
+    private TideSpliterator(TideCalculator calculator, TideStation station, long start, long stepSeconds,
+                            long index, long fence, boolean sized) {
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + stepSeconds);
+        }
+        this.calculator = calculator;
+        this.station = station;
+        this.clock = ZoneClock.of(station.getZoneId());
+        this.start = start;
+        this.step = stepSeconds;
+        this.index = index;
+        this.fence = Math.max(index, fence);
+        this.sized = sized;
+        this.values = new double[BATCH];
+        this.bufferStart = index;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TimedValue> action) {
+        if (index >= fence) {
+            return false;
+        }
+        if (Double.isNaN(previousWH)) {
+            warmUp();
+        }
+        if (index >= bufferStart + bufferCount) {
+            fill();
+        }
+        double wh = values[(int) (index - bufferStart)];
+        TimedValue tide = new TimedValue(clock.toLocalDateTime(start + index * step), wh);
+        if (trend == null) {
+            if (previousWH > wh) {
+                trend = FALLING;
+            } else if (previousWH < wh) {
+                trend = RISING;
+            }
+            tide.setType(trend);
+        } else if (trend == RISING && previousWH > wh) {
+            tide.setType(TideType.HW);
+            trend = FALLING;
+        } else if (trend == FALLING && previousWH < wh) {
+            tide.setType(TideType.LW);
+            trend = RISING;
+        }
+        previousWH = wh;
+        index++;
+        action.accept(tide);
+        return true;
+    }
+
+    @Override
+    public Spliterator<TimedValue> trySplit() {
+        long remaining = fence - index;
+        if (remaining < SPLIT_UNIT) {
+            return null;
+        }
+        long middle;
+        if (sized) {
+            middle = index + remaining / 2;
+        } else {
+            splitSize = Math.min(splitSize + SPLIT_UNIT, MAX_SPLIT);
+            middle = index + Math.min(splitSize, remaining / 2);
+        }
+        if (!fits(middle)) {
+            return null;
+        }
+        TideSpliterator prefix = new TideSpliterator(calculator, station, start, step, index, middle, true);
+        // the first half carries on from where this one is, buffer included
+        prefix.values = values;
+        prefix.bufferStart = bufferStart;
+        prefix.bufferCount = bufferCount;
+        prefix.previousWH = previousWH;
+        prefix.trend = trend;
+
+        values = new double[BATCH];
+        bufferStart = middle;
+        bufferCount = 0;
+        previousWH = Double.NaN;
+        trend = null;
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        int characteristics = ORDERED | NONNULL | IMMUTABLE;
+        return sized ? characteristics | SIZED | SUBSIZED : characteristics;
+    }
+
+    // start + index * step within the range of the local times, without overflow
+    private boolean fits(long index) {
+        return index <= (MAX_EPOCH_SECOND - start) / step;
+    }
+
+    // previous value, and trend when not at the very beginning of the series
+    private void warmUp() {
+        double[] before = new double[2];
+        calculator.getWaterHeights(station, before, 0, 2, start + (index - 2) * step, step);
+        previousWH = before[1];
+        if (index > 0) {
+            trend = before[0] > before[1] ? FALLING : before[0] < before[1] ? RISING : null;
+        }
+    }
+
+    private void fill() {
+        bufferStart = index;
+        bufferCount = (int) Math.min(BATCH, fence - index);
+        calculator.getWaterHeights(station, values, 0, bufferCount, start + index * step, step);
+    }
+
+}
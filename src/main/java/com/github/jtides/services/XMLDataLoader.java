@@ -2,13 +2,26 @@ package com.github.jtides.services;
 
 import com.github.jtides.models.Constituents;
 import com.github.jtides.models.TideStation;
+import com.github.jtides.util.Metric;
+import com.github.jtides.util.Metrics;
 import org.xml.sax.InputSource;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -17,35 +30,139 @@ public class XMLDataLoader {
     public final static String ARCHIVE_STREAM = "/xml/xml.zip";
     public final static String CONSTITUENTS_ENTRY = "constituents.xml";
     public final static String STATIONS_ENTRY = "stations.xml";
+    public final static String SNAPSHOT_PROPERTY = "jtides.snapshot";
+    public final static String EXTRACT_PROPERTY = "jtides.stations.extract";
+    public final static String OFF_HEAP_PROPERTY = "jtides.offheap";
+    public final static int CHUNKS_PER_CORE = 4;
+
+    private final static int END_RECORD = 0x06054B50;
+    private final static int END_RECORD_SIZE = 22;
+    private final static int CENTRAL_HEADER = 0x02014B50;
+    private final static int CENTRAL_HEADER_SIZE = 46;
+
+    private final Path snapshotFile;
+    private final boolean offHeap;
+    private final Executor executor;
+    private StationSnapshot snapshot = null;
+    // the snapshot file is of other XML data, until written again
+    private boolean snapshotOutdated = false;
+    private StationOffsetIndex offsetIndex = null;
+    private boolean offsetIndexFailed = false;
+    private Map<String, Long> sources = null;
+
+    /**
+     * Uses the binary snapshot named by the {@value #SNAPSHOT_PROPERTY} system property when set,
+     * the snapshot is generated from the XML on first use when the file does not exist yet, or is of other XML entries.
+     * Without snapshot, the {@value #OFF_HEAP_PROPERTY} system property set to true packs the parsed XML
+     * in a direct buffer.
+     */
+    public XMLDataLoader() {
+        this(snapshotFileFromProperty(), Boolean.getBoolean(OFF_HEAP_PROPERTY));
+    }
+
+    /**
+     * @param snapshotFile Path of the binary snapshot, null to always read the XML archive
+     */
+    public XMLDataLoader(Path snapshotFile) {
+        this(snapshotFile, false);
+    }
+
+    /**
+     * The stations read from a snapshot are flyweight views on the mapped file (see {@link StationSnapshot#getStationViews()}),
+     * so the catalogue takes next to nothing on the Java heap
+     * @param snapshotFile Path of the binary snapshot, null to always read the XML archive
+     * @param offHeap boolean without snapshot file, keep the stations read from the XML in a direct buffer rather than on the heap
+     */
+    public XMLDataLoader(Path snapshotFile, boolean offHeap) {
+        this(snapshotFile, offHeap, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param snapshotFile Path of the binary snapshot, null to always read the XML archive
+     * @param offHeap boolean without snapshot file, keep the stations read from the XML in a direct buffer rather than on the heap
+     * @param executor Executor stations.xml is parsed on, in {@value #CHUNKS_PER_CORE} chunks per core
+     */
+    public XMLDataLoader(Path snapshotFile, boolean offHeap, Executor executor) {
+        this.snapshotFile = snapshotFile;
+        this.offHeap = offHeap;
+        this.executor = executor;
+    }
 
     public Constituents loadConstituentsFromXml() {
-        SpeedConstituentFinder scf = new SpeedConstituentFinder();
+        long start = Metrics.startTimer();
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            InputSource is = getZipInputSource(CONSTITUENTS_ENTRY);
-            saxParser.parse(is, scf);
+            return readConstituents();
+        } finally {
+            Metrics.stopTimer(Metric.LOAD_CONSTITUENTS, start);
+        }
+    }
+
+    public Set<TideStation> loadTideStationsFromXml() {
+        long start = Metrics.startTimer();
+        try {
+            return readTideStations();
+        } finally {
+            Metrics.stopTimer(Metric.LOAD_STATIONS, start);
+        }
+    }
+
+    public TideStation loadTideStation(String stationName) {
+        long start = Metrics.startTimer();
+        try {
+            return readTideStation(stationName);
+        } finally {
+            Metrics.stopTimer(Metric.LOAD_STATION, start);
+        }
+    }
+
+    private Constituents readConstituents() {
+        StationSnapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            return snapshot.getConstituents();
+        }
+        try {
+            byte[] xml = readZipEntry(CONSTITUENTS_ENTRY);
+            return new XMLDataScanner(xml, 0, xml.length).readConstituents();
         } catch (Exception ex) {
             ex.printStackTrace();
         }
-        return scf.getConstituents();
+        return new Constituents();
     }
 
-    public Set<TideStation> loadTideStationsFromXml() {
-        Set<TideStation> stations = new HashSet<>();
-        StationFinder stationFinder = new StationFinder(stations);
+    private Set<TideStation> readTideStations() {
+        StationSnapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            return snapshot.getStationViews();
+        }
+        Set<TideStation> stations = new LinkedHashSet<>();
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            InputSource source = getZipInputSource(STATIONS_ENTRY);
-            saxParser.parse(source, stationFinder);
+            byte[] xml = readZipEntry(STATIONS_ENTRY);
+            int chunks = CHUNKS_PER_CORE * Runtime.getRuntime().availableProcessors();
+            stations.addAll(XMLDataScanner.readStations(xml, chunks, executor));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
+        if (snapshotFile != null && !stations.isEmpty()) {
+            writeSnapshot(stations);
+            snapshot = getSnapshot();
+            if (snapshot != null) {
+                return snapshot.getStationViews();
+            }
+        } else if (offHeap && !stations.isEmpty()) {
+            return packSnapshot(stations).getStationViews();
+        }
         return stations;
     }
 
-    public TideStation loadTideStation(String stationName) {
+    private TideStation readTideStation(String stationName) {
+        StationSnapshot snapshot = getSnapshot();
+        if (snapshot != null) {
+            return snapshot.getTideStation(stationName);
+        }
+        StationOffsetIndex offsetIndex = getOffsetIndex();
+        if (offsetIndex != null) {
+            return offsetIndex.loadTideStation(stationName);
+        }
         StationFinder stationFinder = new StationFinder();
         stationFinder.setStationName(stationName);
         try {
@@ -61,31 +178,170 @@ public class XMLDataLoader {
         return stationFinder.getTideStation();
     }
 
-    private InputSource getZipInputSource(String entryName) throws Exception {
-        InputStream zipStream = XMLDataLoader.class.getResourceAsStream(ARCHIVE_STREAM);
-        if (zipStream != null) {
-            ZipInputStream zip = new ZipInputStream(zipStream);
-            InputSource inputSource = null;
-            boolean hasNext = true;
-            while (hasNext) {
-                ZipEntry zipEntry = zip.getNextEntry();
-                if (zipEntry == null) {
-                    hasNext = false;
+    private synchronized StationSnapshot getSnapshot() {
+        if (snapshot == null && !snapshotOutdated && snapshotFile != null && Files.isRegularFile(snapshotFile)) {
+            try {
+                StationSnapshot opened = StationSnapshot.open(snapshotFile);
+                if (opened.isSnapshotOf(getSource(CONSTITUENTS_ENTRY), getSource(STATIONS_ENTRY))) {
+                    snapshot = opened;
                 } else {
-                    if (zipEntry.getName().equals(entryName)) {
-                        inputSource = new InputSource(zip);
-                        inputSource.setEncoding("ISO-8859-1");
-                        hasNext = false;
-                    }
+                    snapshotOutdated = true;
+                    System.err.println("Regenerating station snapshot " + snapshotFile + ": generated from other XML data");
                 }
+            } catch (Exception ex) {
+                System.err.println("Ignoring station snapshot " + snapshotFile + ": " + ex.getLocalizedMessage());
+            }
+        }
+        return snapshot;
+    }
+
+    private synchronized StationSnapshot packSnapshot(Set<TideStation> stations) {
+        snapshot = StationSnapshot.pack(loadConstituentsFromXml(), stations);
+        return snapshot;
+    }
+
+    private void writeSnapshot(Set<TideStation> stations) {
+        try {
+            StationSnapshot.write(snapshotFile, loadConstituentsFromXml(), stations, getSource(CONSTITUENTS_ENTRY), getSource(STATIONS_ENTRY));
+            synchronized (this) {
+                snapshotOutdated = false;
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * The uncompressed copy of stations.xml goes to the {@value #EXTRACT_PROPERTY} file, by default
+     * jtides-stations-&lt;size and CRC-32&gt;.xml in the temporary directory, and is reused by the next runs while its size and
+     * CRC-32 match the archive entry. The property set to an empty value turns it off, a station is then found by a full scan.
+     * Built on the first station read outside the loaded catalogue, tried once.
+     */
+    private synchronized StationOffsetIndex getOffsetIndex() {
+        if (offsetIndex == null && !offsetIndexFailed) {
+            Path extract = extractFile();
+            if (extract == null) {
+                offsetIndexFailed = true;
+                return null;
+            }
+            try (InputStream xml = getZipEntryStream(STATIONS_ENTRY)) {
+                offsetIndex = StationOffsetIndex.build(xml, extract, getSource(STATIONS_ENTRY));
+            } catch (Exception ex) {
+                offsetIndexFailed = true;
+                System.err.println("Not able to index " + STATIONS_ENTRY + ", falling back to a full scan: " + ex.getLocalizedMessage());
             }
-            if (inputSource == null) {
-                throw new RuntimeException("Entry " + entryName + " not found in " + ARCHIVE_STREAM);
+        }
+        return offsetIndex;
+    }
+
+    private Path extractFile() {
+        String extract = System.getProperty(EXTRACT_PROPERTY);
+        if (extract == null) {
+            String name = String.format("jtides-stations-%016x.xml", getSource(STATIONS_ENTRY));
+            return Paths.get(System.getProperty("java.io.tmpdir"), name);
+        }
+        return extract.trim().isEmpty() ? null : Paths.get(extract.trim());
+    }
+
+    /**
+     * What a copy of an archive entry is checked against, read once from the central directory at the end of the
+     * archive: the compressed bytes are read, not inflated
+     * @param entryName String {@value #CONSTITUENTS_ENTRY} or {@value #STATIONS_ENTRY}
+     * @return long uncompressed size of the entry in the high 32 bits, its CRC-32 in the low ones
+     * @throws IllegalStateException when the archive cannot be read
+     */
+    public synchronized long getSource(String entryName) {
+        if (sources == null) {
+            InputStream zipStream = XMLDataLoader.class.getResourceAsStream(ARCHIVE_STREAM);
+            if (zipStream == null) {
+                throw new IllegalStateException("Not able to read zip file with stations and constituents");
             }
-            return inputSource;
-        } else {
+            try (InputStream in = zipStream) {
+                sources = readCentralDirectory(XMLDataScanner.readFully(in, -1L));
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        Long source = sources.get(entryName);
+        if (source == null) {
+            throw new IllegalStateException("Entry " + entryName + " not found in " + ARCHIVE_STREAM);
+        }
+        return source;
+    }
+
+    // (size, CRC-32) of each entry, from the end of central directory record and the central directory headers
+    private static Map<String, Long> readCentralDirectory(byte[] zip) {
+        ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        int end = zip.length - END_RECORD_SIZE;
+        // the record is followed by a comment of at most 64 KB
+        while (end >= 0 && (buffer.getInt(end) != END_RECORD || end + END_RECORD_SIZE + (buffer.getShort(end + 20) & 0xFFFF) != zip.length)) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IllegalStateException("No central directory in " + ARCHIVE_STREAM);
+        }
+        int entries = buffer.getShort(end + 10) & 0xFFFF;
+        int header = buffer.getInt(end + 16);
+        Map<String, Long> read = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            if (header < 0 || header + CENTRAL_HEADER_SIZE > end || buffer.getInt(header) != CENTRAL_HEADER) {
+                throw new IllegalStateException("Invalid central directory in " + ARCHIVE_STREAM);
+            }
+            long crc = buffer.getInt(header + 16) & 0xFFFFFFFFL;
+            long size = buffer.getInt(header + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(header + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(header + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(header + 32) & 0xFFFF;
+            String name = new String(zip, header + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            read.put(name, size << 32 | crc);
+            header += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return read;
+    }
+
+    private static Path snapshotFileFromProperty() {
+        String file = System.getProperty(SNAPSHOT_PROPERTY);
+        return file == null || file.trim().isEmpty() ? null : Paths.get(file.trim());
+    }
+
+    private InputSource getZipInputSource(String entryName) throws Exception {
+        InputSource inputSource = new InputSource(getZipEntryStream(entryName));
+        inputSource.setEncoding("ISO-8859-1");
+        return inputSource;
+    }
+
+    private InputStream getZipEntryStream(String entryName) throws Exception {
+        ZipInputStream zip = openZip();
+        findEntry(zip, entryName);
+        return zip;
+    }
+
+    // the entry sizes are in the archive, the document is read in one array of the right size
+    private byte[] readZipEntry(String entryName) throws Exception {
+        try (ZipInputStream zip = openZip()) {
+            ZipEntry zipEntry = findEntry(zip, entryName);
+            return XMLDataScanner.readFully(zip, zipEntry.getSize());
+        }
+    }
+
+    private ZipInputStream openZip() {
+        InputStream zipStream = XMLDataLoader.class.getResourceAsStream(ARCHIVE_STREAM);
+        if (zipStream == null) {
             throw new IllegalStateException("Not able to read zip file with stations and constituents");
         }
+        return new ZipInputStream(zipStream);
+    }
+
+    private ZipEntry findEntry(ZipInputStream zip, String entryName) throws Exception {
+        ZipEntry zipEntry = zip.getNextEntry();
+        while (zipEntry != null) {
+            if (zipEntry.getName().equals(entryName)) {
+                return zipEntry;
+            }
+            zipEntry = zip.getNextEntry();
+        }
+        zip.close();
+        throw new RuntimeException("Entry " + entryName + " not found in " + ARCHIVE_STREAM);
     }
 
 }
@@ -0,0 +1,564 @@
+package com.github.jtides.services;
+
+import com.github.jtides.models.ConstSpeed;
+import com.github.jtides.models.Constituents;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.util.TideUtilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Byte scanner for the fixed schema of constituents.xml and stations.xml (ISO-8859-1, no DTD, no CDATA),
+ * a faster replacement of the SAX handlers {@link SpeedConstituentFinder} and {@link StationFinder}
+ * giving the same objects.
+ *
+ * Element and attribute names are compared as bytes, numbers are parsed from the bytes (see {@link #parseDouble(int, int)})
+ * and the repeated strings (harmonic names, units, time zones) are decoded once per scanner.
+ * Not thread safe, one scanner per thread: {@link #readStations(byte[], int, Executor)} runs one per chunk.
+ */
+public class XMLDataScanner {
+
+    private final static byte[] STATION = bytes("station");
+    private final static byte[] NAME_PART = bytes("name-part");
+    private final static byte[] POSITION = bytes("position");
+    private final static byte[] TIME_ZONE = bytes("time-zone");
+    private final static byte[] BASE_HEIGHT = bytes("base-height");
+    private final static byte[] HARMONIC_COEFF = bytes("harmonic-coeff");
+    private final static byte[] CONST_SPEED = bytes("const-speed");
+    private final static byte[] COEFF_NAME = bytes("coeff-name");
+    private final static byte[] COEFF_VALUE = bytes("coeff-value");
+    private final static byte[] EQUILIBRIUM = bytes("equilibrium");
+    private final static byte[] FACTOR = bytes("factor");
+
+    private final static byte[] NAME = bytes("name");
+    private final static byte[] LATITUDE = bytes("latitude");
+    private final static byte[] LONGITUDE = bytes("longitude");
+    private final static byte[] OFFSET = bytes("offset");
+    private final static byte[] VALUE = bytes("value");
+    private final static byte[] UNIT = bytes("unit");
+    private final static byte[] AMPLITUDE = bytes("amplitude");
+    private final static byte[] EPOCH = bytes("epoch");
+    private final static byte[] IDX = bytes("idx");
+    private final static byte[] YEAR = bytes("year");
+
+    public final static int MIN_CHUNK_SIZE = 1 << 20;
+
+    private final static byte[] STATION_START = bytes("<station");
+    private final static int MAX_ATTRIBUTES = 16;
+    // exact powers of ten as doubles, see parseDouble
+    private final static double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1D;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10D;
+        }
+    }
+
+    private final byte[] xml;
+    private final int end;
+    private int position;
+
+    // element name and attributes of the current tag: [start, end) byte ranges
+    private int elementStart;
+    private int elementEnd;
+    private final int[] attributeNames = new int[MAX_ATTRIBUTES * 2];
+    private final int[] attributeValues = new int[MAX_ATTRIBUTES * 2];
+    private int attributeCount;
+    private boolean emptyElement;
+    private int closingStart;
+    private int closingEnd;
+
+    private final Strings strings = new Strings();
+
+    /**
+     * @param xml byte[] ISO-8859-1 document, or part of it holding whole elements
+     * @param from int first byte to scan
+     * @param to int end of the bytes to scan, excluded
+     */
+    public XMLDataScanner(byte[] xml, int from, int to) {
+        this.xml = xml;
+        this.position = from;
+        this.end = to;
+    }
+
+    /**
+     * Parses stations.xml concurrently: the document is cut in chunks just before &lt;station elements
+     * and each chunk is read by its own scanner
+     * @param xml byte[] the whole document
+     * @param chunks int number of chunks wanted, fewer for a document under chunks x {@value #MIN_CHUNK_SIZE} bytes
+     * @param executor Executor the chunks are parsed on
+     * @return List<TideStation> in document order, whatever order the chunks complete in
+     */
+    public static List<TideStation> readStations(byte[] xml, int chunks, Executor executor) {
+        int[] bounds = splitStations(xml, chunks);
+        List<CompletableFuture<List<TideStation>>> parts = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                List<TideStation> stations = new ArrayList<>();
+                new XMLDataScanner(xml, from, to).readStations(stations::add);
+                return stations;
+            }, executor));
+        }
+        List<TideStation> stations = new ArrayList<>();
+        for (CompletableFuture<List<TideStation>> part : parts) {
+            stations.addAll(part.join());
+        }
+        return stations;
+    }
+
+    /**
+     * @param xml byte[] stations.xml
+     * @param chunks int number of chunks wanted
+     * @return int[] chunk bounds, from 0 to xml.length, each inner bound on the '&lt;' of a station element
+     */
+    static int[] splitStations(byte[] xml, int chunks) {
+        int count = Math.max(1, Math.min(chunks, xml.length / MIN_CHUNK_SIZE));
+        int[] bounds = new int[count + 1];
+        int size = 1;
+        for (int k = 1; k < count; k++) {
+            int bound = indexOfStation(xml, Math.max((int) ((long) xml.length * k / count), bounds[size - 1] + 1));
+            if (bound < 0) {
+                break;
+            }
+            bounds[size++] = bound;
+        }
+        bounds[size++] = xml.length;
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private static int indexOfStation(byte[] xml, int from) {
+        int last = xml.length - STATION_START.length;
+        for (int i = from; i < last; i++) {
+            if (xml[i] == '<' && isSpace(xml[i + STATION_START.length])) {
+                int j = 1;
+                while (j < STATION_START.length && xml[i + j] == STATION_START[j]) {
+                    j++;
+                }
+                if (j == STATION_START.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public Constituents readConstituents() {
+        Constituents constituents = new Constituents();
+        ConstSpeed constituent = null;
+        int idx = -1;
+        String coeffName = null;
+        int year = -1;
+        while (nextTag()) {
+            if (isElement(CONST_SPEED)) {
+                idx = parseInt(attribute(IDX));
+                coeffName = null;
+                constituent = null;
+            } else if (isElement(COEFF_NAME)) {
+                coeffName = strings.get(textStart(), textEnd());
+            } else if (isElement(COEFF_VALUE)) {
+                constituent = new ConstSpeed(idx, coeffName, parseDouble(textStart(), textEnd()));
+                constituents.getConstSpeedMap().put(coeffName, constituent);
+            } else if (isElement(EQUILIBRIUM)) {
+                year = parseInt(attribute(YEAR));
+                constituent.putEquilibrium(year, parseDouble(textStart(), textEnd()));
+            } else if (isElement(FACTOR)) {
+                year = parseInt(attribute(YEAR));
+                constituent.putFactor(year, parseDouble(textStart(), textEnd()));
+            }
+        }
+        return constituents;
+    }
+
+    /**
+     * @param sink Consumer<TideStation> called for each station, in document order
+     */
+    public void readStations(Consumer<TideStation> sink) {
+        TideStation station = null;
+        while (nextTag()) {
+            if (elementStart < 0) {
+                // closing tag
+                if (station != null && isClosing(STATION)) {
+                    sink.accept(station);
+                    station = null;
+                }
+            } else if (isElement(STATION)) {
+                station = new TideStation();
+                station.setFullName(decode(attribute(NAME)));
+                if (emptyElement) {
+                    sink.accept(station);
+                    station = null;
+                }
+            } else if (station == null) {
+                continue;
+            } else if (isElement(HARMONIC_COEFF)) {
+                station.getHarmonics().add(new Harmonic(intern(attribute(NAME)), parseDouble(attribute(AMPLITUDE)),
+                        parseDouble(attribute(EPOCH)) * TideUtilities.COEFF_FOR_EPOCH));
+            } else if (isElement(NAME_PART)) {
+                station.getNameParts().add(decode(attribute(NAME)));
+            } else if (isElement(POSITION)) {
+                station.setLatitude(parseDouble(attribute(LATITUDE)));
+                station.setLongitude(parseDouble(attribute(LONGITUDE)));
+            } else if (isElement(TIME_ZONE)) {
+                station.setTimeZone(intern(attribute(NAME)));
+                station.setTimeOffset(intern(attribute(OFFSET)));
+            } else if (isElement(BASE_HEIGHT)) {
+                station.setBaseHeight(parseDouble(attribute(VALUE)));
+                station.setUnit(intern(attribute(UNIT)));
+            }
+        }
+    }
+
+    /**
+     * Moves to the next start or end tag, skipping the prolog, comments and text.
+     * For a closing tag elementStart is -1 and its name is in [closingStart, closingEnd)
+     * @return boolean false at the end of the bytes
+     */
+    private boolean nextTag() {
+        while (true) {
+            int open = indexOf((byte) '<', position);
+            if (open < 0 || open + 1 >= end) {
+                position = end;
+                return false;
+            }
+            byte next = xml[open + 1];
+            if (next == '?' || next == '!') {
+                position = skipSpecial(open);
+            } else if (next == '/') {
+                readEndTag(open + 2);
+                return true;
+            } else {
+                readStartTag(open + 1);
+                return true;
+            }
+        }
+    }
+
+    private void readEndTag(int from) {
+        int i = from;
+        while (i < end && xml[i] != '>' && !isSpace(xml[i])) {
+            i++;
+        }
+        elementStart = -1;
+        attributeCount = 0;
+        closingStart = from;
+        closingEnd = i;
+        int close = indexOf((byte) '>', i);
+        position = close < 0 ? end : close + 1;
+    }
+
+    private void readStartTag(int from) {
+        int i = from;
+        while (i < end && xml[i] != '>' && xml[i] != '/' && !isSpace(xml[i])) {
+            i++;
+        }
+        elementStart = from;
+        elementEnd = i;
+        attributeCount = 0;
+        emptyElement = false;
+        while (i < end) {
+            byte b = xml[i];
+            if (b == '>') {
+                i++;
+                break;
+            } else if (b == '/') {
+                emptyElement = true;
+                i++;
+            } else if (isSpace(b)) {
+                i++;
+            } else {
+                int nameStart = i;
+                while (i < end && xml[i] != '=' && !isSpace(xml[i])) {
+                    i++;
+                }
+                int nameEnd = i;
+                while (i < end && xml[i] != '"' && xml[i] != '\'') {
+                    i++;
+                }
+                if (i >= end) {
+                    throw new IllegalStateException("Malformed attribute at byte " + nameStart);
+                }
+                byte quote = xml[i++];
+                int valueStart = i;
+                while (i < end && xml[i] != quote) {
+                    i++;
+                }
+                if (attributeCount < MAX_ATTRIBUTES) {
+                    attributeNames[attributeCount * 2] = nameStart;
+                    attributeNames[attributeCount * 2 + 1] = nameEnd;
+                    attributeValues[attributeCount * 2] = valueStart;
+                    attributeValues[attributeCount * 2 + 1] = i;
+                    attributeCount++;
+                }
+                i++;
+            }
+        }
+        position = i;
+    }
+
+    private int skipSpecial(int open) {
+        if (open + 3 < end && xml[open + 2] == '-' && xml[open + 3] == '-') {
+            for (int i = open + 4; i + 2 < end; i++) {
+                if (xml[i] == '-' && xml[i + 1] == '-' && xml[i + 2] == '>') {
+                    return i + 3;
+                }
+            }
+            return end;
+        }
+        int close = indexOf((byte) '>', open);
+        return close < 0 ? end : close + 1;
+    }
+
+    private boolean isElement(byte[] name) {
+        return elementStart >= 0 && equals(elementStart, elementEnd, name);
+    }
+
+    private boolean isClosing(byte[] name) {
+        return elementStart < 0 && equals(closingStart, closingEnd, name);
+    }
+
+    /**
+     * @param name byte[] attribute name
+     * @return int index of the value range in attributeValues
+     */
+    private int attribute(byte[] name) {
+        for (int a = 0; a < attributeCount; a++) {
+            if (equals(attributeNames[a * 2], attributeNames[a * 2 + 1], name)) {
+                return a * 2;
+            }
+        }
+        throw new IllegalStateException("Attribute " + new String(name, StandardCharsets.ISO_8859_1) + " missing at byte " + elementStart);
+    }
+
+    private String decode(int attribute) {
+        String s = new String(xml, attributeValues[attribute], attributeValues[attribute + 1] - attributeValues[attribute], StandardCharsets.ISO_8859_1);
+        return StationOffsetIndex.unescape(s);
+    }
+
+    private String intern(int attribute) {
+        return strings.get(attributeValues[attribute], attributeValues[attribute + 1]);
+    }
+
+    private double parseDouble(int attribute) {
+        return parseDouble(attributeValues[attribute], attributeValues[attribute + 1]);
+    }
+
+    private int parseInt(int attribute) {
+        return parseInt(attributeValues[attribute], attributeValues[attribute + 1]);
+    }
+
+    // text of the current element, trimmed: from after the start tag to the next '<'
+    private int textStart() {
+        int i = position;
+        while (i < end && isSpace(xml[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private int textEnd() {
+        int i = indexOf((byte) '<', position);
+        if (i < 0) {
+            i = end;
+        }
+        while (i > position && isSpace(xml[i - 1])) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Plain decimals of up to 15 digits ("-12.345") are exact as long / 10^n, both exact doubles, so the division
+     * gives the same double as {@link Double#parseDouble(String)}. Anything else goes to Double.parseDouble
+     * @param from int
+     * @param to int excluded
+     * @return double
+     */
+    double parseDouble(int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (xml[i] == '-' || xml[i] == '+')) {
+            negative = xml[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int decimals = -1;
+        for (; i < to; i++) {
+            byte b = xml[i];
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa != 0 || b != '0') {
+                    significant++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == to && digits > 0 && significant <= 15 && decimals < POWERS_OF_TEN.length) {
+            double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(xml, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+    int parseInt(int from, int to) {
+        int i = from;
+        boolean negative = i < to && xml[i] == '-';
+        if (negative || (i < to && xml[i] == '+')) {
+            i++;
+        }
+        if (i >= to || to - i > 9) {
+            return Integer.parseInt(new String(xml, from, to - from, StandardCharsets.ISO_8859_1).trim());
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            byte b = xml[i];
+            if (b < '0' || b > '9') {
+                return Integer.parseInt(new String(xml, from, to - from, StandardCharsets.ISO_8859_1).trim());
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < end; i++) {
+            if (xml[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equals(int from, int to, byte[] name) {
+        if (to - from != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (xml[from + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads a stream to its end in one array when the size is known, growing it otherwise
+     * @param in InputStream not closed
+     * @param size long expected number of bytes, -1 if unknown
+     * @return byte[] exactly the bytes read
+     * @throws IOException on read failure
+     */
+    public static byte[] readFully(InputStream in, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Document too large: " + size);
+        }
+        byte[] bytes = new byte[size >= 0 ? (int) size : 1 << 20];
+        int count = 0;
+        while (true) {
+            if (count == bytes.length) {
+                int next = in.read();
+                if (next < 0) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, 1 << 20));
+                bytes[count++] = (byte) next;
+            }
+            int read = in.read(bytes, count, bytes.length - count);
+            if (read < 0) {
+                return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+            }
+            count += read;
+        }
+    }
+
+    /**
+     * Strings decoded from byte ranges, the same instance for the same bytes: open addressing on the hash of the bytes
+     */
+    private class Strings {
+        private int[] hashes = new int[256];
+        private String[] values = new String[256];
+        private int size;
+
+        private String get(int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + xml[i];
+            }
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                if (hashes[slot] == hash && matches(values[slot], from, to)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            String value = StationOffsetIndex.unescape(new String(xml, from, to - from, StandardCharsets.ISO_8859_1)).intern();
+            hashes[slot] = hash;
+            values[slot] = value;
+            if (++size * 2 > values.length) {
+                grow();
+            }
+            return value;
+        }
+
+        // the decoded string is compared back to the bytes, ISO-8859-1 is one byte per char
+        private boolean matches(String value, int from, int to) {
+            if (value.length() != to - from || value.indexOf('&') >= 0) {
+                return value.equals(StationOffsetIndex.unescape(new String(xml, from, to - from, StandardCharsets.ISO_8859_1)));
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) != (char) (xml[from + i] & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            int[] oldHashes = hashes;
+            String[] oldValues = values;
+            hashes = new int[oldHashes.length * 2];
+            values = new String[oldValues.length * 2];
+            int mask = values.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = oldHashes[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+}
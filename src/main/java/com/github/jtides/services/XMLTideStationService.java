@@ -1,53 +1,121 @@
 package com.github.jtides.services;
 
 import com.github.jtides.models.*;
+import com.github.jtides.util.AstronomicalArguments;
+import com.github.jtides.util.BoundedCache;
+import com.github.jtides.util.Metric;
+import com.github.jtides.util.Metrics;
 import com.github.jtides.util.StationTreeNode;
 import com.github.jtides.util.TideUtilities;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Stations, constituents and the indexes over them, published as one immutable catalog behind an atomic reference.
+ * Thread safe: reads take no lock and see either the previous or the new catalog during a {@link #reload()},
+ * the loaded stations are never modified (corrections work on copies, see {@link #correctHarmonics(TideStation, int)}).
+ */
 public class XMLTideStationService {
 
     private final XMLDataLoader stationsService = new XMLDataLoader();
-    private Constituents constituents = null;
-    private Set<TideStation> stations = null;
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>();
+    private final BoundedCache<StationYear, CompiledStation> compiledStations;
     private static final String RESERVED_KEY = "x";
+    private static final int RESERVED_ID = -2;
+    public static final int DEFAULT_CORRECTION_CACHE_SIZE = 1024;
 
     public XMLTideStationService() {
+        this(DEFAULT_CORRECTION_CACHE_SIZE);
+    }
+
+    /**
+     * @param correctionCacheSize int max number of (station, year) corrected harmonics kept in memory
+     */
+    public XMLTideStationService(int correctionCacheSize) {
+        compiledStations = new BoundedCache<>(correctionCacheSize);
+        reload();
+    }
+
+    /**
+     * Loads the data again and swaps the catalog in one step, readers are never blocked
+     */
+    public void reload() {
         try {
-            constituents = stationsService.loadConstituentsFromXml();
-            stations = stationsService.loadTideStationsFromXml();
+            // constituents.xml is read while stations.xml is
+            CompletableFuture<Constituents> loading = CompletableFuture.supplyAsync(stationsService::loadConstituentsFromXml);
+            Set<TideStation> stations = stationsService.loadTideStationsFromXml();
+            Constituents constituents = loading.join();
+            List<Coefficient> siteConstSpeed = Collections.unmodifiableList(getSiteConstSpeed(constituents));
+            catalog.set(new Catalog(constituents, siteConstSpeed, stations));
+            compiledStations.clear();
         } catch (Exception ex) {
             throw new IllegalStateException(ex);
         }
     }
 
+    /**
+     * @return Set<TideStation> unmodifiable
+     */
     public Set<TideStation> getStations() {
-        return stations;
+        return catalog.get().stations;
     }
 
     public Constituents getConstituents() {
-        return constituents;
+        return catalog.get().constituents;
     }
 
     public List<Coefficient> getSiteConstSpeed() throws Exception {
-        return getSiteConstSpeed(constituents);
+        return catalog.get().siteConstSpeed;
     }
 
     public double getAmplitudeFix(int year, String name) {
-        return getAmplitudeFix(constituents, year, name);
+        return getAmplitudeFix(getConstituents(), year, name);
     }
 
     public double getEpochFix(int year, String name) {
-        return getEpochFix(constituents, year, name);
+        return getEpochFix(getConstituents(), year, name);
     }
 
     public TideStation getTideStation(String stationName, int year) {
-        return findTideStation(stationName, year, stations);
+        return findTideStation(stationName, year, getStations());
+    }
+
+    /**
+     * @param stationName String full name or name part
+     * @param year int
+     * @return CompiledStation corrected for the year, null when the station is unknown
+     */
+    public CompiledStation getCompiledStation(String stationName, int year) {
+        TideStation station = getStationIndex().find(stationName);
+        Metrics.increment(station == null ? Metric.LOOKUP_MISS : Metric.LOOKUP_HIT);
+        return station == null ? null : compile(station, year);
+    }
+
+    /**
+     * @param station TideStation as loaded (see {@link #getTideStations()})
+     * @param year int
+     * @return CompiledStation corrected for the year
+     */
+    public CompiledStation getCompiledStation(TideStation station, int year) {
+        return compile(station, year);
     }
 
+    /**
+     * @return Set<TideStation> unmodifiable
+     */
     public Set<TideStation> getTideStations() {
-        return stations;
+        return catalog.get().stations;
+    }
+
+    public StationIndex getStationIndex() {
+        return catalog.get().stationIndex;
+    }
+
+    public StationSpatialIndex getSpatialIndex() {
+        return catalog.get().spatialIndex;
     }
 
     public TreeMap<String, StationTreeNode> getStationTree(Set<TideStation> stations) {
@@ -68,24 +136,42 @@ public class XMLTideStationService {
         return coefficients;
     }
 
+    /**
+     * @param doc Constituents
+     * @param year int
+     * @param name String constituent name
+     * @return double node factor, from the table of doc or computed for the years it does not cover, 0 for an unknown constituent
+     */
     public double getAmplitudeFix(Constituents doc, int year, String name) {
-        ConstSpeed cs = doc.getConstSpeedMap().get(name);
-        if (cs != null) {
-            return cs.getFactors().get(year);
+        int id = doc.getId(name);
+        if (id < 0) {
+            return 0.0D;
         }
-        return 0.0D;
+        return doc.hasYear(year) ? doc.getFactor(id, year) : AstronomicalArguments.forYear(year).getNodeFactor(name);
     }
 
+    /**
+     * @param doc Constituents
+     * @param year int
+     * @param name String constituent name
+     * @return double equilibrium argument in radians, from the table of doc or computed for the years it does not cover
+     */
     public double getEpochFix(Constituents doc, int year, String name) {
-        ConstSpeed cs = doc.getConstSpeedMap().get(name);
-        if (cs != null) {
-            double f = cs.getEquilibrium().get(year);
-            return f * TideUtilities.COEFF_FOR_EPOCH;
+        int id = doc.getId(name);
+        if (id < 0) {
+            return 0.0D;
         }
-        return 0.0D;
+        double equilibrium = doc.hasYear(year) ? doc.getEquilibrium(id, year) : AstronomicalArguments.forYear(year).getEquilibriumArgument(name);
+        return equilibrium * TideUtilities.COEFF_FOR_EPOCH;
     }
 
     public TideStation findTideStation(String stationName, int year, Set<TideStation> stations) {
+        Catalog current = catalog.get();
+        if (stations == current.stations) {
+            TideStation station = current.stationIndex.find(stationName);
+            Metrics.increment(station == null ? Metric.LOOKUP_MISS : Metric.LOOKUP_HIT);
+            return station == null ? null : correctHarmonics(station, year);
+        }
         Optional<TideStation> station = stations.stream().filter(s -> s.getFullName().equals(stationName)).findAny();
         if ( !station.isPresent()){
            station = stations.stream().filter(s -> s.getNameParts().contains(stationName)).findAny();
@@ -93,32 +179,120 @@ public class XMLTideStationService {
         return station.map(tideStation -> correctHarmonics(tideStation, year)).orElse(null);
     }
 
+    /**
+     * The loaded stations are never modified, this returns a copy with the harmonics corrected
+     * with the node factors and equilibrium arguments of the year, cached per (station, year)
+     * @param tideStation TideStation as loaded, or a copy corrected for another year
+     * @param year int
+     * @return TideStation corrected for the year
+     */
     public TideStation correctHarmonics(TideStation tideStation, int year) {
-        TideStation station = tideStation;
-        if (station.yearHarmonicsFixed() != -1 && station.yearHarmonicsFixed() != year) {
-            TideStation newTideStation = getTideStation(station.getFullName());
-            stations.add(newTideStation);
-            station = newTideStation;
+        if (tideStation.yearHarmonicsFixed() == year) {
+            return tideStation;
+        }
+        TideStation base = tideStation;
+        if (base.yearHarmonicsFixed() != -1) {
+            TideStation loaded = getStationIndex().find(base.getFullName());
+            boolean sameStation = loaded != null && loaded.getFullName().equals(base.getFullName());
+            base = sameStation ? loaded : stationsService.loadTideStation(base.getFullName());
         }
+        return compile(base, year).getStation();
+    }
+
+    public CacheStats getCorrectionCacheStats() {
+        return compiledStations.getStats();
+    }
 
-        // Correction to the Harmonics
-        if (station.yearHarmonicsFixed() == -1) {
-            for (Harmonic harm : station.getHarmonics()) {
-                String name = harm.getName();
-                if (!RESERVED_KEY.equals(name)) {
-                    double amplitudeFix = getAmplitudeFix(constituents, year, name);
-                    double epochFix = getEpochFix(constituents, year, name);
-                    harm.setAmplitude(harm.getAmplitude() * amplitudeFix);
-                    harm.setEpoch(harm.getEpoch() - epochFix);
+    private CompiledStation compile(TideStation base, int year) {
+        Metrics.increment(Metric.CORRECTION_REQUESTS);
+        return compiledStations.get(new StationYear(base, year), key -> {
+            long start = Metrics.startTimer();
+            Catalog current = catalog.get();
+            CompiledStation compiled = CompiledStation.compile(correct(current, key.station, key.year), key.year, current.siteConstSpeed);
+            Metrics.stopTimer(Metric.CORRECTION, start);
+            return compiled;
+        });
+    }
+
+    // constituent ids resolved once per station, then the factor and equilibrium of each harmonic are read by id
+    private TideStation correct(Catalog current, TideStation base, int year) {
+        TideStation station = new TideStation(base);
+        Constituents constituents = current.constituents;
+        int[] ids = current.getHarmonicIds(base);
+        boolean table = constituents.hasYear(year);
+        AstronomicalArguments computed = table ? null : AstronomicalArguments.forYear(year);
+        List<Harmonic> harmonics = station.getHarmonics();
+        for (int i = 0; i < ids.length; i++) {
+            int id = ids[i];
+            if (id == RESERVED_ID) {
+                continue;
+            }
+            Harmonic harm = harmonics.get(i);
+            double amplitudeFix = 0.0D;
+            double epochFix = 0.0D;
+            if (id >= 0) {
+                if (table) {
+                    amplitudeFix = constituents.getFactor(id, year);
+                    epochFix = constituents.getEquilibrium(id, year) * TideUtilities.COEFF_FOR_EPOCH;
+                } else {
+                    int index = current.astronomicalIndexes[id];
+                    if (index < 0) {
+                        throw new IllegalArgumentException("No astronomical definition for " + harm.getName());
+                    }
+                    amplitudeFix = computed.getNodeFactor(index);
+                    epochFix = computed.getEquilibriumArgument(index) * TideUtilities.COEFF_FOR_EPOCH;
                 }
             }
-            station.setHarmonicsFixedForYear(year);
+            harm.setAmplitude(harm.getAmplitude() * amplitudeFix);
+            harm.setEpoch(harm.getEpoch() - epochFix);
         }
+        station.setHarmonicsFixedForYear(year);
         return station;
     }
 
-    private TideStation getTideStation(String stationName) {
-        return stationsService.loadTideStation(stationName);
+    private static class Catalog {
+        private final Constituents constituents;
+        private final List<Coefficient> siteConstSpeed;
+        private final Set<TideStation> stations;
+        private final StationIndex stationIndex;
+        private final StationSpatialIndex spatialIndex;
+        // AstronomicalArguments index of each constituent id
+        private final int[] astronomicalIndexes;
+        // constituent id of each harmonic of the catalogue stations
+        private final Map<TideStation, int[]> harmonicIds = new ConcurrentHashMap<>();
+
+        private Catalog(Constituents constituents, List<Coefficient> siteConstSpeed, Set<TideStation> stations) {
+            this.constituents = constituents;
+            this.siteConstSpeed = siteConstSpeed;
+            this.stations = Collections.unmodifiableSet(stations);
+            this.stationIndex = new StationIndex(stations);
+            this.spatialIndex = new StationSpatialIndex(stations);
+            this.astronomicalIndexes = new int[constituents.size()];
+            for (int id = 0; id < astronomicalIndexes.length; id++) {
+                astronomicalIndexes[id] = AstronomicalArguments.getIndex(constituents.getName(id));
+            }
+        }
+
+        /**
+         * @param station TideStation as loaded
+         * @return int[] constituent id of each harmonic, -1 when unknown, {@link #RESERVED_ID} for the reserved key
+         */
+        private int[] getHarmonicIds(TideStation station) {
+            int[] ids = harmonicIds.get(station);
+            if (ids == null) {
+                List<Harmonic> harmonics = station.getHarmonics();
+                ids = new int[harmonics.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    String name = harmonics.get(i).getName();
+                    ids[i] = RESERVED_KEY.equals(name) ? RESERVED_ID : constituents.getId(name);
+                }
+                // stations read again from the data files are not kept
+                if (stations.contains(station)) {
+                    harmonicIds.put(station, ids);
+                }
+            }
+            return ids;
+        }
     }
 
-}
+}
\ No newline at end of file
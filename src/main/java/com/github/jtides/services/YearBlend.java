@@ -0,0 +1,96 @@
+package com.github.jtides.services;
+
+/**
+ * Water heights across Jan 1st 00:00: the harmonic sums of the year before and of the year after, each with its own
+ * corrections and time origin, are mixed with a smoothstep weight over [from, to). The node factors and equilibrium
+ * arguments change from one year to the next, the mix removes the step this makes in the curve and in its slope.
+ * Hours are counted from Jan 1st of the year before.
+ */
+final class YearBlend implements HarmonicCurve {
+
+    private final CompiledStation before;
+    private final CompiledStation after;
+    private final double shift;
+    private final double fromHours;
+    private final double widthHours;
+
+    /**
+     * @param before CompiledStation of the year ending at the boundary
+     * @param after CompiledStation of the year starting at the boundary
+     * @param from long epoch second the mix starts at, weight 0 for after
+     * @param to long epoch second the mix ends at, weight 1 for after
+     */
+    YearBlend(CompiledStation before, CompiledStation after, long from, long to) {
+        this.before = before;
+        this.after = after;
+        this.shift = (after.getYearStart() - before.getYearStart()) * CompiledStation.HOURS_PER_SECOND;
+        this.fromHours = before.getHours(from);
+        this.widthHours = (to - from) * CompiledStation.HOURS_PER_SECOND;
+    }
+
+    @Override
+    public double getHours(long epochSecond) {
+        return before.getHours(epochSecond);
+    }
+
+    @Override
+    public long getEpochMilli(double hours) {
+        return before.getEpochMilli(hours);
+    }
+
+    @Override
+    public double getWaterHeight(double hours) {
+        double w = weight(hours);
+        return before.toValue((1D - w) * before.getSum(hours) + w * after.getSum(hours - shift));
+    }
+
+    @Override
+    public void getWaterHeights(double[] values, int offset, int count, double startHours, double stepHours) {
+        double[] next = new double[count];
+        before.getSums(values, offset, count, startHours, stepHours);
+        after.getSums(next, 0, count, startHours - shift, stepHours);
+        for (int i = 0; i < count; i++) {
+            double w = weight(startHours + i * stepHours);
+            values[offset + i] = before.toValue((1D - w) * values[offset + i] + w * next[i]);
+        }
+    }
+
+    @Override
+    public double getSlope(double hours) {
+        double w = weight(hours);
+        double slope = (1D - w) * before.getSlope(hours) + w * after.getSlope(hours - shift);
+        return slope + weightSlope(hours) * (after.getSum(hours - shift) - before.getSum(hours));
+    }
+
+    @Override
+    public void getSlopes(double[] values, int offset, int count, double startHours, double stepHours) {
+        double[] next = new double[count];
+        double[] sums = new double[count];
+        double[] nextSums = new double[count];
+        before.getSlopes(values, offset, count, startHours, stepHours);
+        after.getSlopes(next, 0, count, startHours - shift, stepHours);
+        before.getSums(sums, 0, count, startHours, stepHours);
+        after.getSums(nextSums, 0, count, startHours - shift, stepHours);
+        for (int i = 0; i < count; i++) {
+            double hours = startHours + i * stepHours;
+            double w = weight(hours);
+            values[offset + i] = (1D - w) * values[offset + i] + w * next[i] + weightSlope(hours) * (nextSums[i] - sums[i]);
+        }
+    }
+
+    // 3x^2 - 2x^3, flat at both ends so the slope of the mix joins the slopes of the two years
+    private double weight(double hours) {
+        double x = position(hours);
+        return x * x * (3D - 2D * x);
+    }
+
+    private double weightSlope(double hours) {
+        double x = position(hours);
+        return 6D * x * (1D - x) / widthHours;
+    }
+
+    private double position(double hours) {
+        return Math.max(0D, Math.min(1D, (hours - fromHours) / widthHours));
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.github.jtides.services;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts between epoch seconds (UTC) and the local time of a zone, with the start of each local year
+ * precomputed from {@value #FIRST_YEAR} to {@value #LAST_YEAR}. Immutable, one shared instance per zone.
+ *
+ * Predictions work on epoch seconds, local times are only made for the output.
+ * A local time in a DST gap is moved forward by the gap length, one in an overlap takes the earlier offset
+ * (same as {@link LocalDateTime#atZone(ZoneId)}).
+ */
+public final class ZoneClock {
+
+    public final static int FIRST_YEAR = 1900;
+    public final static int LAST_YEAR = 2100;
+
+    private final static ConcurrentHashMap<ZoneId, ZoneClock> CLOCKS = new ConcurrentHashMap<>();
+
+    private final ZoneId zoneId;
+    private final ZoneRules rules;
+    private final long[] yearStarts;
+
+    private ZoneClock(ZoneId zoneId) {
+        this.zoneId = zoneId;
+        this.rules = zoneId.getRules();
+        this.yearStarts = new long[LAST_YEAR - FIRST_YEAR + 2];
+        for (int i = 0; i < yearStarts.length; i++) {
+            yearStarts[i] = LocalDate.of(FIRST_YEAR + i, 1, 1).atStartOfDay(zoneId).toEpochSecond();
+        }
+    }
+
+    public static ZoneClock of(ZoneId zoneId) {
+        return CLOCKS.computeIfAbsent(zoneId, ZoneClock::new);
+    }
+
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    public ZoneRules getRules() {
+        return rules;
+    }
+
+    /**
+     * @param year int
+     * @return long epoch second of Jan 1st 00:00 local time
+     */
+    public long getYearStart(int year) {
+        int i = year - FIRST_YEAR;
+        if (i >= 0 && i < yearStarts.length) {
+            return yearStarts[i];
+        }
+        return LocalDate.of(year, 1, 1).atStartOfDay(zoneId).toEpochSecond();
+    }
+
+    /**
+     * @param epochSecond long
+     * @return int local year of the instant
+     */
+    public int getYear(long epochSecond) {
+        if (epochSecond < yearStarts[0] || epochSecond >= yearStarts[yearStarts.length - 1]) {
+            return toLocalDateTime(epochSecond).getYear();
+        }
+        int low = 0;
+        int high = yearStarts.length - 1;
+        // last year start at or before the instant
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (yearStarts[mid] <= epochSecond) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return FIRST_YEAR + low;
+    }
+
+    public ZoneOffset getOffset(long epochSecond) {
+        return rules.getOffset(Instant.ofEpochSecond(epochSecond));
+    }
+
+    public LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, getOffset(epochSecond));
+    }
+
+    /**
+     * @param epochMilli long
+     * @return LocalDateTime to the millisecond
+     */
+    public LocalDateTime toLocalDateTimeMillis(long epochMilli) {
+        long epochSecond = Math.floorDiv(epochMilli, 1000L);
+        int nanos = (int) Math.floorMod(epochMilli, 1000L) * 1000000;
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, getOffset(epochSecond));
+    }
+
+    public long toEpochSecond(LocalDateTime localDateTime) {
+        return localDateTime.atZone(zoneId).toEpochSecond();
+    }
+
+    /**
+     * @param day LocalDate
+     * @return long epoch second of the first instant of the local day
+     */
+    public long getDayStart(LocalDate day) {
+        return day.atStartOfDay(zoneId).toEpochSecond();
+    }
+
+}
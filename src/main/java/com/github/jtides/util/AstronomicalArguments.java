@@ -0,0 +1,481 @@
+package com.github.jtides.util;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Equilibrium arguments (V0 + u, degrees) and node factors (f) of the constituents of constituents.xml, computed
+ * from the {@link OrbitalElements} so that harmonics can be corrected for any year, not only 1970-2037 of the table.
+ *
+ * Three kinds of constituents:
+ * - Schureman's: V from the Doodson numbers, u and f from his formulas in xi, nu, nu', 2nu'' (and R for L2)
+ * - compounds (overtides, MSF, ...): sums of the above, node factors multiplied
+ * - Foreman's (ALP1, TAU1, ..., the -IOS ones): f and u from a sum of satellites in p and N,
+ *   amplitudes and phases adjusted on the shipped table
+ *
+ * {@link #forYear(int)} follows the table: V at Jan 1st 00:00 UTC, u and f in the middle of the year. Over 1970-2037
+ * it is within 0.3 degrees and 0.004 of the table (1.2 degrees and 0.01 for OO1-IOS), see AstronomicalArgumentsCheck.
+ * {@link #at(long)} takes everything at one instant, for node factors updated within a year.
+ */
+public final class AstronomicalArguments {
+
+    public final static int CACHE_SIZE = 512;
+
+    private final static Map<String, Integer> INDEX = new HashMap<>();
+    private final static List<Definition> DEFINITIONS = new ArrayList<>();
+    private final static BoundedCache<Integer, AstronomicalArguments> YEARS = new BoundedCache<>(CACHE_SIZE);
+
+    static {
+        // name, Doodson numbers on T, s, h, p, p1, phase, u = a xi + b nu + c nu' + d 2nu'', node factor
+        schureman("SA", 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("SSA", 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("SA-IOS", 0, 0, 1, 0, -1, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("MM", 0, 1, 0, -1, 0, 0, 0, 0, 0, 0, NodeFactor.MM);
+        schureman("MSM", 0, 1, -2, 1, 0, 0, 0, 0, 0, 0, NodeFactor.MM);
+        schureman("MF", 0, 2, 0, 0, 0, 0, -2, 0, 0, 0, NodeFactor.MF);
+        schureman("MF-IOS", 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("A7", 0, 3, 0, -1, 0, 0, -2, 0, 0, 0, NodeFactor.MF);
+        schureman("2Q1", 1, -4, 1, 2, 0, 90, 2, -1, 0, 0, NodeFactor.O1);
+        schureman("SIG1", 1, -4, 3, 0, 0, 90, 2, -1, 0, 0, NodeFactor.O1);
+        schureman("Q1", 1, -3, 1, 1, 0, 90, 2, -1, 0, 0, NodeFactor.O1);
+        schureman("RHO1", 1, -3, 3, -1, 0, 90, 2, -1, 0, 0, NodeFactor.O1);
+        schureman("O1", 1, -2, 1, 0, 0, 90, 2, -1, 0, 0, NodeFactor.O1);
+        schureman("CHI1", 1, -1, 3, -1, 0, -90, 0, -1, 0, 0, NodeFactor.J1);
+        schureman("PI1", 1, 0, -2, 0, 1, 90, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("P1", 1, 0, -1, 0, 0, 90, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("S1", 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("K1", 1, 0, 1, 0, 0, -90, 0, 0, -1, 0, NodeFactor.K1);
+        schureman("PSI1", 1, 0, 2, 0, -1, -90, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("PHI1", 1, 0, 3, 0, 0, -90, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("THE1", 1, 1, -1, 1, 0, -90, 0, -1, 0, 0, NodeFactor.J1);
+        schureman("J1", 1, 1, 1, -1, 0, -90, 0, -1, 0, 0, NodeFactor.J1);
+        schureman("OO1", 1, 2, 1, 0, 0, -90, -2, -1, 0, 0, NodeFactor.OO1);
+        schureman("2N2", 2, -4, 2, 2, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("MU2", 2, -4, 4, 0, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("EPS2", 2, -5, 4, 1, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("N2", 2, -3, 2, 1, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("NU2", 2, -3, 4, -1, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("M2", 2, -2, 2, 0, 0, 0, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("LDA2", 2, -1, 0, 1, 0, 180, 2, -2, 0, 0, NodeFactor.M2);
+        schureman("L2", 2, -1, 2, -1, 0, 180, 2, -2, 0, 0, NodeFactor.L2);
+        schureman("T2", 2, 0, -1, 0, 1, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("S2", 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("R2", 2, 0, 1, 0, -1, 180, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("K2", 2, 0, 2, 0, 0, 0, 0, 0, 0, -1, NodeFactor.K2);
+        schureman("KJ2", 2, 1, 2, -1, 0, 0, 0, -2, 0, 0, NodeFactor.KJ2);
+        schureman("M3", 3, -3, 3, 0, 0, 0, 3, -3, 0, 0, NodeFactor.M3);
+        schureman("S3", 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("S4", 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+        schureman("S6", 6, 0, 0, 0, 0, 0, 0, 0, 0, 0, NodeFactor.ONE);
+
+        // name, Doodson numbers on T, s, h, p, p1, then per satellite: multiple of p, multiple of N, amplitude, phase
+        satellites("ALP1", 1, -5, 3, 1, 0, 0, 0, 1.0, 90, 0, 1, 0.1906, 90);
+        satellites("BET1", 1, -1, -1, 1, 0, 0, 0, 1.0, -90, 0, 1, 0.2266, -90);
+        satellites("TAU1", 1, -2, 3, 0, 0, 0, 0, 1.0, -90, -2, 0, 0.0446, -90, 0, -2, 0.0142, 90, 0, -1, 0.217, 90, 0, 1, 0.0284, 90);
+        satellites("UPS1", 1, 3, 1, -1, 0, 0, 0, 1.0, -90, -2, 0, 0.0611, -90, 0, -2, 0.1318, -90, 0, -1, 0.6399, -90);
+        satellites("KQ1", 1, 3, 1, -1, 0, 0, 0, 0.9983, -90, 0, -3, 0.0088, -90, 0, -2, 0.1343, -90, 0, -1, 0.6389, -90);
+        satellites("M1", 1, -1, 1, 1, 0, 0, 0, 1.4297, -69.7, -2, 0, 0.5001, -69.7, -2, 1, 0.0942, -69.8, -2, 2, 0.0029, 110.2,
+                0, -1, 0.2975, -69.7, 0, 1, 0.0267, 110.3);
+        satellites("ETA2", 2, 1, 2, -1, 0, 0, 0, 1.0, 0, 0, -2, 0.0467, 0, 0, -1, 0.4355, 0, 0, 1, 0.0187, 180, 2, 0, 0.0078, 180);
+        satellites("H1", 2, -2, 1, 0, 1, 0, 0, 1.0, 180, 0, 1, 0.0224, 0, 1, 0, 0.0447, 77.0);
+        satellites("H2", 2, -2, 3, 0, -1, 0, 0, 1.0, 0, 0, 1, 0.0217, 180);
+        satellites("MP1", 1, -2, 3, 0, 0, 0, 0, 1.0, -90, 0, -2, 0.0043, 90, 0, -1, 0.1982, -90, 0, 1, 0.029, 90);
+        satellites("SO1", 1, 2, -1, 0, 0, 0, 0, 1.0, -90, 0, -2, 0.0043, 90, 0, -1, 0.1982, -90, 0, 1, 0.029, 90);
+        satellites("OQ2", 2, -5, 2, 3, 0, 0, 0, 1.0, 0, 0, 1, 0.0386, 180);
+        satellites("OO1-IOS", 1, 2, 1, 0, 0, 0, 0, 1.0, -90, -2, -1, 0.0297, -90, -2, 0, 0.1497, -90, -2, 1, 0.0037, 90,
+                0, -2, 0.1337, -90, 0, -1, 0.6398, -90);
+        satellites("R2-IOS", 2, 0, 1, 0, -1, 0, 0, 1.2326, -174.8, 0, -1, 0.0141, 26.2, 1, 2, 0.0026, -137.5, -1, -2, 0.0024, 8.8);
+        satellites("S1-IOS", 1, 0, 0, 0, 1, 0, 0, 0.6999, -77.2, 0, -1, 0.0265, 90, 1, 2, 0.0034, -97.6, -1, -2, 0.0035, 45.5);
+
+        // name, then multiple and name of each component
+        compound("MSF", 1, "S2", -1, "M2");
+        compound("2SM2", 2, "S2", -1, "M2");
+        compound("3MS2", 3, "M2", -2, "S2");
+        compound("2MN2", 2, "M2", -1, "N2");
+        compound("MNS2", 1, "M2", 1, "N2", -1, "S2");
+        compound("MKS2", 1, "M2", 1, "K2", -1, "S2");
+        compound("MPS2", 1, "M2", 2, "P1", -1, "S2");
+        compound("MSN2", 1, "M2", 1, "S2", -1, "N2");
+        compound("NLK2", 1, "N2", 1, "L2", -1, "K2");
+        compound("OP2", 1, "O1", 1, "P1");
+        compound("NO1", 1, "N2", -1, "O1");
+        compound("KP1", 1, "K2", -1, "P1");
+        compound("RP1", 1, "R2", -1, "P1");
+        compound("TK1", 1, "T2", -1, "K1");
+        compound("MO3", 1, "M2", 1, "O1");
+        compound("SO3", 1, "S2", 1, "O1");
+        compound("MK3", 1, "M2", 1, "K1");
+        compound("SK3", 1, "S2", 1, "K1");
+        compound("2MK3", 2, "M2", -1, "K1");
+        compound("M4", 2, "M2");
+        compound("MN4", 1, "M2", 1, "N2");
+        compound("SN4", 1, "S2", 1, "N2");
+        compound("MS4", 1, "M2", 1, "S2");
+        compound("MK4", 1, "M2", 1, "K2");
+        compound("SK4", 1, "S2", 1, "K2");
+        compound("3MS4", 3, "M2", -1, "S2");
+        compound("2MK5", 2, "M2", 1, "K1");
+        compound("2SK5", 2, "S2", 1, "K1");
+        compound("M6", 3, "M2");
+        compound("2MN6", 2, "M2", 1, "N2");
+        compound("2NM6", 2, "N2", 1, "M2");
+        compound("2MS6", 2, "M2", 1, "S2");
+        compound("2SM6", 2, "S2", 1, "M2");
+        compound("2MK6", 2, "M2", 1, "K2");
+        compound("MSN6", 1, "M2", 1, "S2", 1, "N2");
+        compound("MSK6", 1, "M2", 1, "S2", 1, "K2");
+        compound("SNK6", 1, "S2", 1, "N2", 1, "K2");
+        compound("3MK7", 3, "M2", 1, "K1");
+        compound("M8", 4, "M2");
+        compound("3MN8", 3, "M2", 1, "N2");
+        compound("3MS8", 3, "M2", 1, "S2");
+        compound("M10", 5, "M2");
+        compound("M12", 6, "M2");
+    }
+
+    private final double[] equilibria;
+    private final double[] factors;
+
+    private AstronomicalArguments(OrbitalElements astronomical, OrbitalElements nodal) {
+        int size = DEFINITIONS.size();
+        double[] arguments = new double[size];
+        double[] us = new double[size];
+        factors = new double[size];
+        for (int i = 0; i < size; i++) {
+            // components come first, so a compound reads values already computed
+            DEFINITIONS.get(i).compute(astronomical, nodal, arguments, us, factors, i);
+        }
+        equilibria = new double[size];
+        for (int i = 0; i < size; i++) {
+            equilibria[i] = OrbitalElements.normalize(arguments[i] + us[i]);
+        }
+    }
+
+    /**
+     * As in constituents.xml: V at Jan 1st 00:00 UTC, u and f in the middle of the year. Cached
+     * @param year int
+     * @return AstronomicalArguments
+     */
+    public static AstronomicalArguments forYear(int year) {
+        return YEARS.get(year, y -> {
+            long start = LocalDate.of(y, 1, 1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long end = LocalDate.of(y + 1, 1, 1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            return new AstronomicalArguments(OrbitalElements.at(start), OrbitalElements.at(start + (end - start) / 2));
+        });
+    }
+
+    /**
+     * V, u and f at the same instant
+     * @param epochSecond long UTC
+     * @return AstronomicalArguments
+     */
+    public static AstronomicalArguments at(long epochSecond) {
+        OrbitalElements elements = OrbitalElements.at(epochSecond);
+        return new AstronomicalArguments(elements, elements);
+    }
+
+    /**
+     * @param name String constituent name, e.g. "M2"
+     * @return boolean true when the constituent can be computed
+     */
+    public static boolean isDefined(String name) {
+        return INDEX.containsKey(name);
+    }
+
+    /**
+     * @param name String constituent name, e.g. "M2"
+     * @return int index for {@link #getEquilibriumArgument(int)} and {@link #getNodeFactor(int)}, -1 when not defined
+     */
+    public static int getIndex(String name) {
+        Integer index = INDEX.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return List<String> the constituents that can be computed
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<>(DEFINITIONS.size());
+        for (Definition definition : DEFINITIONS) {
+            names.add(definition.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param name String constituent name
+     * @return double V0 + u in degrees, [0, 360)
+     * @throws IllegalArgumentException for an unknown constituent
+     */
+    public double getEquilibriumArgument(String name) {
+        return equilibria[indexOf(name)];
+    }
+
+    /**
+     * @param name String constituent name
+     * @return double f
+     * @throws IllegalArgumentException for an unknown constituent
+     */
+    public double getNodeFactor(String name) {
+        return factors[indexOf(name)];
+    }
+
+    /**
+     * @param index int from {@link #getIndex(String)}
+     * @return double V0 + u in degrees, [0, 360)
+     */
+    public double getEquilibriumArgument(int index) {
+        return equilibria[index];
+    }
+
+    /**
+     * @param index int from {@link #getIndex(String)}
+     * @return double f
+     */
+    public double getNodeFactor(int index) {
+        return factors[index];
+    }
+
+    private static int indexOf(String name) {
+        Integer index = INDEX.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("No astronomical definition for " + name);
+        }
+        return index;
+    }
+
+    private static void schureman(String name, int t, int s, int h, int p, int p1, double phase,
+                                  int xi, int nu, int nuPrime, int twoNuSecond, NodeFactor factor) {
+        add(new Schureman(name, new int[]{t, s, h, p, p1}, phase, new int[]{xi, nu, nuPrime, twoNuSecond}, factor));
+    }
+
+    private static void satellites(String name, int t, int s, int h, int p, int p1, double... terms) {
+        add(new Satellites(name, new int[]{t, s, h, p, p1}, terms));
+    }
+
+    private static void compound(String name, Object... components) {
+        int[] multiples = new int[components.length / 2];
+        int[] indexes = new int[multiples.length];
+        for (int i = 0; i < multiples.length; i++) {
+            multiples[i] = (Integer) components[2 * i];
+            indexes[i] = indexOf((String) components[2 * i + 1]);
+        }
+        add(new Compound(name, multiples, indexes));
+    }
+
+    private static void add(Definition definition) {
+        INDEX.put(definition.name, DEFINITIONS.size());
+        DEFINITIONS.add(definition);
+    }
+
+    private static double doodson(int[] numbers, OrbitalElements e) {
+        return numbers[0] * e.getHourAngle() + numbers[1] * e.getS() + numbers[2] * e.getH()
+                + numbers[3] * e.getP() + numbers[4] * e.getP1();
+    }
+
+    private abstract static class Definition {
+        private final String name;
+
+        private Definition(String name) {
+            this.name = name;
+        }
+
+        abstract void compute(OrbitalElements astronomical, OrbitalElements nodal, double[] arguments, double[] us, double[] factors, int i);
+    }
+
+    private static class Schureman extends Definition {
+        private final int[] doodson;
+        private final double phase;
+        private final int[] u;
+        private final NodeFactor factor;
+
+        private Schureman(String name, int[] doodson, double phase, int[] u, NodeFactor factor) {
+            super(name);
+            this.doodson = doodson;
+            this.phase = phase;
+            this.u = u;
+            this.factor = factor;
+        }
+
+        @Override
+        void compute(OrbitalElements astronomical, OrbitalElements nodal, double[] arguments, double[] us, double[] factors, int i) {
+            arguments[i] = doodson(doodson, astronomical) + phase;
+            us[i] = u[0] * nodal.getXi() + u[1] * nodal.getNu() + u[2] * nodal.getNuPrime() + u[3] * nodal.getTwoNuSecond()
+                    + factor.getU(nodal);
+            factors[i] = factor.getF(nodal);
+        }
+    }
+
+    // f e^(iu) = sum of amplitude e^(i (a p + b N + phase))
+    private static class Satellites extends Definition {
+        private final int[] doodson;
+        private final double[] terms;
+
+        private Satellites(String name, int[] doodson, double[] terms) {
+            super(name);
+            this.doodson = doodson;
+            this.terms = terms;
+        }
+
+        @Override
+        void compute(OrbitalElements astronomical, OrbitalElements nodal, double[] arguments, double[] us, double[] factors, int i) {
+            double x = 0D;
+            double y = 0D;
+            for (int t = 0; t < terms.length; t += 4) {
+                double angle = Math.toRadians(terms[t] * nodal.getP() + terms[t + 1] * nodal.getN() + terms[t + 3]);
+                x += terms[t + 2] * Math.cos(angle);
+                y += terms[t + 2] * Math.sin(angle);
+            }
+            arguments[i] = doodson(doodson, astronomical);
+            us[i] = Math.toDegrees(Math.atan2(y, x));
+            factors[i] = Math.sqrt(x * x + y * y);
+        }
+    }
+
+    private static class Compound extends Definition {
+        private final int[] multiples;
+        private final int[] indexes;
+
+        private Compound(String name, int[] multiples, int[] indexes) {
+            super(name);
+            this.multiples = multiples;
+            this.indexes = indexes;
+        }
+
+        @Override
+        void compute(OrbitalElements astronomical, OrbitalElements nodal, double[] arguments, double[] us, double[] factors, int i) {
+            double argument = 0D;
+            double u = 0D;
+            double f = 1D;
+            for (int c = 0; c < multiples.length; c++) {
+                argument += multiples[c] * arguments[indexes[c]];
+                u += multiples[c] * us[indexes[c]];
+                f *= Math.pow(factors[indexes[c]], Math.abs(multiples[c]));
+            }
+            arguments[i] = argument;
+            us[i] = u;
+            factors[i] = f;
+        }
+    }
+
+    /**
+     * Schureman's node factor formulas, numbered as in his table 2
+     */
+    private enum NodeFactor {
+        ONE {
+            double getF(OrbitalElements e) {
+                return 1D;
+            }
+        },
+        /** (73) */
+        MM {
+            double getF(OrbitalElements e) {
+                double sinI = sin(e.getI());
+                return (2D / 3D - sinI * sinI) / 0.5021D;
+            }
+        },
+        /** (74) */
+        MF {
+            double getF(OrbitalElements e) {
+                double sinI = sin(e.getI());
+                return sinI * sinI / 0.1578D;
+            }
+        },
+        /** (75) */
+        O1 {
+            double getF(OrbitalElements e) {
+                double cosHalfI = cos(e.getI() / 2D);
+                return sin(e.getI()) * cosHalfI * cosHalfI / 0.3800D;
+            }
+        },
+        /** (76) */
+        J1 {
+            double getF(OrbitalElements e) {
+                return sin(2D * e.getI()) / 0.7214D;
+            }
+        },
+        /** (77) */
+        OO1 {
+            double getF(OrbitalElements e) {
+                double sinHalfI = sin(e.getI() / 2D);
+                return sin(e.getI()) * sinHalfI * sinHalfI / 0.0164D;
+            }
+        },
+        /** (78) */
+        M2 {
+            double getF(OrbitalElements e) {
+                double cosHalfI = cos(e.getI() / 2D);
+                return Math.pow(cosHalfI, 4) / 0.9154D;
+            }
+        },
+        /** (79) */
+        KJ2 {
+            double getF(OrbitalElements e) {
+                double sinI = sin(e.getI());
+                return sinI * sinI / 0.1565D;
+            }
+        },
+        /** (149) */
+        M3 {
+            double getF(OrbitalElements e) {
+                return Math.pow(cos(e.getI() / 2D), 6) / 0.8758D;
+            }
+        },
+        /** (227) */
+        K1 {
+            double getF(OrbitalElements e) {
+                double sin2I = sin(2D * e.getI());
+                return Math.sqrt(0.8965D * sin2I * sin2I + 0.6001D * sin2I * cos(e.getNu()) + 0.1006D);
+            }
+        },
+        /** (235) */
+        K2 {
+            double getF(OrbitalElements e) {
+                double sinI = sin(e.getI());
+                return Math.sqrt(19.0444D * Math.pow(sinI, 4) + 2.7702D * sinI * sinI * cos(2D * e.getNu()) + 0.0981D);
+            }
+        },
+        /** (215), f(M2) / Ra and u - R, P = p - xi */
+        L2 {
+            double getF(OrbitalElements e) {
+                double tan2 = tanHalfISquared(e);
+                return M2.getF(e) * Math.sqrt(1D - 12D * tan2 * cos(2D * (e.getP() - e.getXi())) + 36D * tan2 * tan2);
+            }
+
+            @Override
+            double getU(OrbitalElements e) {
+                double twoP = 2D * (e.getP() - e.getXi());
+                return -Math.toDegrees(Math.atan2(sin(twoP), 1D / (6D * tanHalfISquared(e)) - cos(twoP)));
+            }
+        };
+
+        abstract double getF(OrbitalElements e);
+
+        /**
+         * @param e OrbitalElements
+         * @return double term of u not linear in xi, nu, nu', 2nu''
+         */
+        double getU(OrbitalElements e) {
+            return 0D;
+        }
+
+        private static double sin(double degrees) {
+            return Math.sin(Math.toRadians(degrees));
+        }
+
+        private static double cos(double degrees) {
+            return Math.cos(Math.toRadians(degrees));
+        }
+
+        private static double tanHalfISquared(OrbitalElements e) {
+            double tan = Math.tan(Math.toRadians(e.getI() / 2D));
+            return tan * tan;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.github.jtides.util;
+
+import com.github.jtides.models.CacheStats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size bounded concurrent cache, reads never lock.
+ * Eviction is second chance (CLOCK): an entry read since it was last considered goes back in the queue once.
+ * Two threads missing the same key at the same time may both compute the value, the first one stored wins.
+ * @param <K> key
+ * @param <V> value
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, Entry<V>> map;
+    private final ConcurrentLinkedQueue<K> clock = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.map = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry = map.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Entry<V> created = new Entry<>(value);
+        Entry<V> existing = map.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.value;
+        }
+        clock.add(key);
+        evict();
+        return value;
+    }
+
+    public V getIfPresent(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void clear() {
+        map.clear();
+        clock.clear();
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), map.size());
+    }
+
+    private void evict() {
+        while (map.size() > maximumSize) {
+            K candidate = clock.poll();
+            if (candidate == null) {
+                return;
+            }
+            Entry<V> entry = map.get(candidate);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.add(candidate);
+            } else if (map.remove(candidate, entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private volatile boolean referenced = false;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.github.jtides.util;
+
+/**
+ * What the library measures, see {@link Metrics}
+ */
+public enum Metric {
+
+    LOAD_CONSTITUENTS(Kind.TIMER, "Constituents load (XML or snapshot)"),
+    LOAD_STATIONS(Kind.TIMER, "All stations load (XML or snapshot)"),
+    LOAD_STATION(Kind.TIMER, "One station read again from the data files"),
+    LOOKUP_HIT(Kind.COUNTER, "Station names resolved"),
+    LOOKUP_MISS(Kind.COUNTER, "Station names not found"),
+    CORRECTION_REQUESTS(Kind.COUNTER, "Corrected (station, year) harmonics asked for"),
+    CORRECTION(Kind.TIMER, "Harmonics corrected and compiled for a (station, year), the cache misses"),
+    TIDES(Kind.TIMER, "Water heights requests"),
+    HIGH_LOW(Kind.TIMER, "High and low waters requests"),
+    SAMPLES_EVALUATED(Kind.COUNTER, "Water heights computed"),
+    SAMPLES_PER_REQUEST(Kind.HISTOGRAM, "Water heights computed per request"),
+    EXTREMA_FOUND(Kind.COUNTER, "High and low waters found"),
+    PREDICTION_CACHE_HIT(Kind.COUNTER, "Daily predictions served from memory"),
+    PREDICTION_STORE_HIT(Kind.COUNTER, "Daily high and low waters read from the extrema file"),
+    PREDICTION_CACHE_MISS(Kind.COUNTER, "Daily predictions computed");
+
+    public enum Kind {
+        COUNTER, TIMER, HISTOGRAM
+    }
+
+    private final Kind kind;
+    private final String description;
+
+    Metric(Kind kind, String description) {
+        this.kind = kind;
+        this.description = description;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+}
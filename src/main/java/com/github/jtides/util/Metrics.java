@@ -0,0 +1,113 @@
+package com.github.jtides.util;
+
+import com.github.jtides.models.MetricsSnapshot;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Entry point of the library instrumentation, disabled by default.
+ * Disabled, recording is a call to an empty method and timers do not read the clock.
+ * Enable it with the {@value #ENABLED_PROPERTY} system property, {@link #enable()} or your own recorder.
+ */
+public final class Metrics {
+
+    public final static String ENABLED_PROPERTY = "jtides.metrics";
+    public final static String OBJECT_NAME = "com.github.jtides:type=TideMetrics";
+
+    private static volatile MetricsRecorder recorder = MetricsRecorder.NOOP;
+
+    static {
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            enable();
+        }
+    }
+
+    private Metrics() {
+        super();
+    }
+
+    /**
+     * Records to a new {@link TideMetrics}, also registered as the {@value #OBJECT_NAME} JMX MBean
+     * @return TideMetrics
+     */
+    public static synchronized TideMetrics enable() {
+        TideMetrics metrics = new TideMetrics();
+        setRecorder(metrics);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (Exception ex) {
+            System.err.println("Metrics not registered with JMX: " + ex.getLocalizedMessage());
+        }
+        return metrics;
+    }
+
+    public static synchronized void disable() {
+        setRecorder(MetricsRecorder.NOOP);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception ex) {
+            System.err.println("Metrics not unregistered from JMX: " + ex.getLocalizedMessage());
+        }
+    }
+
+    public static void setRecorder(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+    }
+
+    public static MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    public static boolean isEnabled() {
+        return recorder != MetricsRecorder.NOOP;
+    }
+
+    public static MetricsSnapshot getSnapshot() {
+        return recorder.getSnapshot();
+    }
+
+    public static void increment(Metric metric) {
+        recorder.increment(metric, 1L);
+    }
+
+    public static void increment(Metric metric, long delta) {
+        recorder.increment(metric, delta);
+    }
+
+    public static void record(Metric metric, long value) {
+        recorder.record(metric, value);
+    }
+
+    public static void stationPredictions(String station, long samples) {
+        recorder.stationPredictions(station, samples);
+    }
+
+    /**
+     * @return long start of a timer, 0 when disabled
+     */
+    public static long startTimer() {
+        return recorder == MetricsRecorder.NOOP ? 0L : System.nanoTime();
+    }
+
+    /**
+     * @param metric Metric a timer
+     * @param start long from {@link #startTimer()}
+     */
+    public static void stopTimer(Metric metric, long start) {
+        if (start != 0L) {
+            recorder.record(metric, System.nanoTime() - start);
+        }
+    }
+
+}
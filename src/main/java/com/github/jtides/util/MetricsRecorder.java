@@ -0,0 +1,50 @@
+package com.github.jtides.util;
+
+import com.github.jtides.models.MetricsSnapshot;
+
+/**
+ * Where the measures go, {@link TideMetrics} keeps them in memory, other implementations can forward them
+ * to an application metrics library. Called from many threads, must be thread safe.
+ */
+public interface MetricsRecorder {
+
+    MetricsRecorder NOOP = new MetricsRecorder() {
+        @Override
+        public void increment(Metric metric, long delta) {
+        }
+
+        @Override
+        public void record(Metric metric, long value) {
+        }
+
+        @Override
+        public void stationPredictions(String station, long samples) {
+        }
+
+        @Override
+        public MetricsSnapshot getSnapshot() {
+            return MetricsSnapshot.EMPTY;
+        }
+    };
+
+    /**
+     * @param metric Metric a counter
+     * @param delta long
+     */
+    void increment(Metric metric, long delta);
+
+    /**
+     * @param metric Metric a timer (value in nanoseconds) or a histogram
+     * @param value long
+     */
+    void record(Metric metric, long value);
+
+    /**
+     * @param station String full name
+     * @param samples long water heights or extrema computed for the station
+     */
+    void stationPredictions(String station, long samples);
+
+    MetricsSnapshot getSnapshot();
+
+}
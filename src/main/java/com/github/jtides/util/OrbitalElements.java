@@ -0,0 +1,158 @@
+package com.github.jtides.util;
+
+/**
+ * Mean longitudes of the moon and the sun at an instant, with the angles of the moon's orbit on the equator
+ * that the node factors and the u of the constituents depend on.
+ * Formulas of Schureman, Manual of Harmonic Analysis and Prediction of Tides (1958), table 1 and chapter 2. In degrees.
+ */
+public final class OrbitalElements {
+
+    /** 1899-12-31T12:00Z (Greenwich mean noon), origin of Schureman's formulas */
+    public final static long EPOCH_1900 = -2209032000L;
+    /** Obliquity of the ecliptic */
+    public final static double OMEGA = 23.452D;
+    /** Inclination of the moon's orbit on the ecliptic */
+    public final static double INCLINATION = 5.145D;
+
+    private final static double SECONDS_PER_CENTURY = 36525D * 86400D;
+
+    private final double hourAngle;
+    private final double s;
+    private final double h;
+    private final double p;
+    private final double n;
+    private final double p1;
+    private final double i;
+    private final double nu;
+    private final double xi;
+    private final double nuPrime;
+    private final double twoNuSecond;
+
+    private OrbitalElements(long epochSecond) {
+        double t = (epochSecond - EPOCH_1900) / SECONDS_PER_CENTURY;
+        double t2 = t * t;
+        double t3 = t2 * t;
+        hourAngle = normalize(180D + 360D * Math.floorMod(epochSecond, 86400L) / 86400D);
+        s = normalize(270.434164D + 481267.8831D * t - 0.0011D * t2 + 0.0000019D * t3);
+        h = normalize(279.696678D + 36000.768925D * t + 0.000303D * t2);
+        p = normalize(334.329556D + 4069.034033D * t - 0.010325D * t2 - 0.000012D * t3);
+        n = normalize(259.183275D - 1934.142008D * t + 0.002078D * t2 + 0.000002D * t3);
+        p1 = normalize(281.220833D + 1.719175D * t + 0.000453D * t2 + 0.000003D * t3);
+
+        double omega = Math.toRadians(OMEGA);
+        double inclination = Math.toRadians(INCLINATION);
+        double node = Math.toRadians(n);
+        double radI = Math.acos(Math.cos(inclination) * Math.cos(omega) - Math.sin(inclination) * Math.sin(omega) * Math.cos(node));
+        double tanHalfN = Math.tan(node / 2D);
+        double a = Math.atan(Math.cos((omega - inclination) / 2D) / Math.cos((omega + inclination) / 2D) * tanHalfN) - node / 2D;
+        double b = Math.atan(Math.sin((omega - inclination) / 2D) / Math.sin((omega + inclination) / 2D) * tanHalfN) - node / 2D;
+        double radNu = a - b;
+        double sin2I = Math.sin(2D * radI);
+        double sinI2 = Math.sin(radI) * Math.sin(radI);
+        i = Math.toDegrees(radI);
+        nu = signed(Math.toDegrees(radNu));
+        xi = signed(Math.toDegrees(-(a + b)));
+        nuPrime = Math.toDegrees(Math.atan2(sin2I * Math.sin(radNu), sin2I * Math.cos(radNu) + 0.3347D));
+        twoNuSecond = Math.toDegrees(Math.atan2(sinI2 * Math.sin(2D * radNu), sinI2 * Math.cos(2D * radNu) + 0.0727D));
+    }
+
+    /**
+     * @param epochSecond long UTC
+     * @return OrbitalElements at the instant
+     */
+    public static OrbitalElements at(long epochSecond) {
+        return new OrbitalElements(epochSecond);
+    }
+
+    /**
+     * @return double T, hour angle of the mean sun
+     */
+    public double getHourAngle() {
+        return hourAngle;
+    }
+
+    /**
+     * @return double s, mean longitude of the moon
+     */
+    public double getS() {
+        return s;
+    }
+
+    /**
+     * @return double h, mean longitude of the sun
+     */
+    public double getH() {
+        return h;
+    }
+
+    /**
+     * @return double p, longitude of the lunar perigee
+     */
+    public double getP() {
+        return p;
+    }
+
+    /**
+     * @return double N, longitude of the moon's ascending node, 18.61 years backwards
+     */
+    public double getN() {
+        return n;
+    }
+
+    /**
+     * @return double p1, longitude of the solar perigee
+     */
+    public double getP1() {
+        return p1;
+    }
+
+    /**
+     * @return double I, obliquity of the moon's orbit on the equator, 18.3 to 28.6
+     */
+    public double getI() {
+        return i;
+    }
+
+    /**
+     * @return double nu, right ascension of the intersection of the moon's orbit with the equator
+     */
+    public double getNu() {
+        return nu;
+    }
+
+    /**
+     * @return double xi, longitude in the moon's orbit of that intersection
+     */
+    public double getXi() {
+        return xi;
+    }
+
+    /**
+     * @return double nu', term of u of K1
+     */
+    public double getNuPrime() {
+        return nuPrime;
+    }
+
+    /**
+     * @return double 2nu'', term of u of K2
+     */
+    public double getTwoNuSecond() {
+        return twoNuSecond;
+    }
+
+    /**
+     * @param degrees double
+     * @return double same angle in [0, 360)
+     */
+    public static double normalize(double degrees) {
+        double angle = degrees % 360D;
+        return angle < 0D ? angle + 360D : angle;
+    }
+
+    private static double signed(double degrees) {
+        double angle = normalize(degrees);
+        return angle > 180D ? angle - 360D : angle;
+    }
+
+}
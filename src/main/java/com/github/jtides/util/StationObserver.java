@@ -20,43 +20,6 @@ public class StationObserver extends DefaultHandler {
         this.tree = tree;
     }
 
-    private static void addStationToTree(TideStation station, TreeMap<String, StationTreeNode> currentTree) {
-        String timeZoneLabel = "";
-        try {
-            timeZoneLabel = station.getTimeZone().substring(0, station.getTimeZone().indexOf("/"));
-        } catch (Exception ex) {
-            System.err.println(ex + " for " + station.getFullName() + " , " + station.getTimeZone());
-        }
-        StationTreeNode treeNode = currentTree.get(timeZoneLabel);
-        if (treeNode == null) {
-            treeNode = new StationTreeNode(timeZoneLabel);
-            currentTree.put(timeZoneLabel, treeNode);
-        }
-        currentTree = treeNode.getSubTree();
-
-        String timeZoneLabelPart2 = station.getTimeZone().substring(station.getTimeZone().indexOf("/") + 1);
-        treeNode = currentTree.get(timeZoneLabelPart2);
-        if (treeNode == null) {
-            treeNode = new StationTreeNode(timeZoneLabelPart2);
-            currentTree.put(timeZoneLabelPart2, treeNode);
-        }
-        currentTree = treeNode.getSubTree();
-
-        StationTreeNode stationTreeNode = null;
-        for (String name : station.getNameParts()) {
-            stationTreeNode = currentTree.get(name);
-            if (stationTreeNode == null) {
-                stationTreeNode = new StationTreeNode(name);
-                stationTreeNode.setStationType(station.isCurrentStation() ? StationTreeNode.CURRENT_STATION : StationTreeNode.TIDE_STATION);
-                currentTree.put(name, stationTreeNode);
-            }
-            currentTree = stationTreeNode.getSubTree();
-        }
-        if(stationTreeNode != null) {
-            stationTreeNode.setFullStationName(station.getFullName());
-        }
-    }
-
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes)
             throws SAXException {
@@ -89,7 +52,7 @@ public class StationObserver extends DefaultHandler {
         super.endElement(uri, localName, qName);
         if (foundStation && "station".equals(qName)) {
             foundStation = false;
-            addStationToTree(ts, tree);
+            TideUtilities.addStationToTree(ts, tree);
         } else if (foundNameCollection && "name-collection".equals(qName)) {
             foundNameCollection = false;
         }
@@ -0,0 +1,299 @@
+package com.github.jtides.util;
+
+import com.github.jtides.models.TideStation;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+/**
+ * Immutable station tree (time zone region / time zone city / name parts, same levels as
+ * {@link TideUtilities#buildStationTree(java.util.Set)}) held in flat arrays, built once per station set and shared.
+ *
+ * The children of a node are contiguous and sorted by label, so a child is found by binary search and
+ * a page of children is a sub list. {@link Node}s are views made on access; mutable {@link StationTreeNode}
+ * maps are only expanded for the subtree asked for (see {@link Node#toTreeMap()}).
+ */
+public final class StationTree {
+
+    private final static int ROOT = 0;
+
+    private final String[] labels;
+    private final String[] fullStationNames;
+    private final byte[] stationTypes;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] childCounts;
+
+    private StationTree(int size) {
+        labels = new String[size];
+        fullStationNames = new String[size];
+        stationTypes = new byte[size];
+        parents = new int[size];
+        firstChildren = new int[size];
+        childCounts = new int[size];
+    }
+
+    /**
+     * @param stations Collection<TideStation> in a stable order: a node takes the station type of the first station going through it
+     * @return StationTree
+     */
+    public static StationTree build(Collection<TideStation> stations) {
+        TreeMap<String, StationTreeNode> roots = new TreeMap<>();
+        for (TideStation station : stations) {
+            TideUtilities.addStationToTree(station, roots);
+        }
+        int size = 1;
+        Deque<TreeMap<String, StationTreeNode>> pending = new ArrayDeque<>();
+        pending.add(roots);
+        while (!pending.isEmpty()) {
+            TreeMap<String, StationTreeNode> level = pending.poll();
+            size += level.size();
+            for (StationTreeNode node : level.values()) {
+                pending.add(node.getSubTree());
+            }
+        }
+
+        // breadth first, so the children of each node are numbered one after the other
+        StationTree tree = new StationTree(size);
+        tree.labels[ROOT] = "";
+        tree.parents[ROOT] = -1;
+        List<TreeMap<String, StationTreeNode>> subTrees = new ArrayList<>(size);
+        subTrees.add(roots);
+        int next = 1;
+        for (int index = 0; index < size; index++) {
+            TreeMap<String, StationTreeNode> children = subTrees.get(index);
+            tree.firstChildren[index] = next;
+            tree.childCounts[index] = children.size();
+            for (Map.Entry<String, StationTreeNode> child : children.entrySet()) {
+                tree.labels[next] = child.getKey();
+                tree.fullStationNames[next] = child.getValue().getFullStationName();
+                tree.stationTypes[next] = (byte) child.getValue().getStationType();
+                tree.parents[next] = index;
+                subTrees.add(child.getValue().getSubTree());
+                next++;
+            }
+            subTrees.set(index, null);
+        }
+        return tree;
+    }
+
+    public Node getRoot() {
+        return new Node(ROOT);
+    }
+
+    /**
+     * @return int number of nodes, root excluded
+     */
+    public int size() {
+        return labels.length - 1;
+    }
+
+    /**
+     * O(depth x log(children)) lookup
+     * @param path String... labels from the first level down, e.g. "Europe", "Paris", "France", "Brest"
+     * @return Node or null when a label is not there
+     */
+    public Node find(String... path) {
+        return find(Arrays.asList(path));
+    }
+
+    /**
+     * @param path List<String> labels from the first level down
+     * @return Node or null when a label is not there
+     */
+    public Node find(List<String> path) {
+        int index = ROOT;
+        for (String label : path) {
+            index = childIndex(index, label);
+            if (index < 0) {
+                return null;
+            }
+        }
+        return new Node(index);
+    }
+
+    /**
+     * @return TreeMap<String, StationTreeNode> a new mutable copy of the whole tree, as {@link TideUtilities#buildStationTree(java.util.Set)} gives it
+     */
+    public TreeMap<String, StationTreeNode> toTreeMap() {
+        return getRoot().toTreeMap();
+    }
+
+    private int childIndex(int parent, String label) {
+        int low = firstChildren[parent];
+        int high = low + childCounts[parent] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = labels[mid].compareTo(label);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void fill(int index, TreeMap<String, StationTreeNode> subTree) {
+        int first = firstChildren[index];
+        for (int child = first; child < first + childCounts[index]; child++) {
+            StationTreeNode node = new StationTreeNode(labels[child]);
+            node.setFullStationName(fullStationNames[child]);
+            node.setStationType(stationTypes[child]);
+            fill(child, node.getSubTree());
+            subTree.put(labels[child], node);
+        }
+    }
+
+    /**
+     * A node of the tree, a light view made on each access
+     */
+    public final class Node {
+
+        private final int index;
+
+        private Node(int index) {
+            this.index = index;
+        }
+
+        public String getLabel() {
+            return labels[index];
+        }
+
+        /**
+         * @return String full name of the station ending at this node, null for a region or a place with no station of its own
+         */
+        public String getFullStationName() {
+            return fullStationNames[index];
+        }
+
+        /**
+         * @return int {@link StationTreeNode#TIDE_STATION}, {@link StationTreeNode#CURRENT_STATION} or 0 for the time zone levels
+         */
+        public int getStationType() {
+            return stationTypes[index];
+        }
+
+        public boolean isLeaf() {
+            return childCounts[index] == 0;
+        }
+
+        public int getChildCount() {
+            return childCounts[index];
+        }
+
+        /**
+         * @return List<Node> read only, sorted by label
+         */
+        public List<Node> getChildren() {
+            return new Children(firstChildren[index], childCounts[index]);
+        }
+
+        /**
+         * @param offset int first child, from 0
+         * @param limit int max number of children
+         * @return List<Node> read only, sorted by label, empty past the last child
+         */
+        public List<Node> getChildren(int offset, int limit) {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("Invalid page: " + offset + " / " + limit);
+            }
+            int count = childCounts[index];
+            if (offset >= count) {
+                return Collections.emptyList();
+            }
+            return new Children(firstChildren[index] + offset, Math.min(limit, count - offset));
+        }
+
+        /**
+         * @param label String
+         * @return Node or null
+         */
+        public Node getChild(String label) {
+            int child = childIndex(index, label);
+            return child < 0 ? null : new Node(child);
+        }
+
+        /**
+         * @return Node or null for the root
+         */
+        public Node getParent() {
+            return index == ROOT ? null : new Node(parents[index]);
+        }
+
+        /**
+         * @return List<String> labels from the first level down to this node, empty for the root
+         */
+        public List<String> getPath() {
+            List<String> path = new ArrayList<>();
+            for (int i = index; i != ROOT; i = parents[i]) {
+                path.add(labels[i]);
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        /**
+         * @return TreeMap<String, StationTreeNode> a new mutable copy of the children of this node and below
+         */
+        public TreeMap<String, StationTreeNode> toTreeMap() {
+            TreeMap<String, StationTreeNode> subTree = new TreeMap<>();
+            fill(index, subTree);
+            return subTree;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Node && ((Node) o).index == index && ((Node) o).getTree() == StationTree.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return getLabel() + " / " + getFullStationName() + " / " + getStationType();
+        }
+
+        private StationTree getTree() {
+            return StationTree.this;
+        }
+    }
+
+    private class Children extends AbstractList<Node> implements RandomAccess {
+        private final int first;
+        private final int count;
+
+        private Children(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public Node get(int i) {
+            if (i < 0 || i >= count) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", size: " + count);
+            }
+            return new Node(first + i);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+}
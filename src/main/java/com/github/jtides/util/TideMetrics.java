@@ -0,0 +1,176 @@
+package com.github.jtides.util;
+
+import com.github.jtides.models.MetricsSnapshot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory {@link MetricsRecorder}: striped counters, timers and histograms in power of two buckets.
+ * Recording never locks or allocates, except the first prediction of a station.
+ */
+public class TideMetrics implements MetricsRecorder, TideMetricsMXBean {
+
+    private final static Metric[] METRICS = Metric.values();
+
+    private volatile State state = new State();
+
+    @Override
+    public void increment(Metric metric, long delta) {
+        state.counters[metric.ordinal()].add(delta);
+    }
+
+    @Override
+    public void record(Metric metric, long value) {
+        state.distributions[metric.ordinal()].record(value);
+    }
+
+    @Override
+    public void stationPredictions(String station, long samples) {
+        state.stations.computeIfAbsent(station, key -> new LongAdder()).add(samples);
+    }
+
+    @Override
+    public MetricsSnapshot getSnapshot() {
+        State current = state;
+        Map<String, Long> counters = new LinkedHashMap<>();
+        Map<String, MetricsSnapshot.Distribution> distributions = new LinkedHashMap<>();
+        for (Metric metric : METRICS) {
+            if (metric.getKind() == Metric.Kind.COUNTER) {
+                counters.put(metric.name(), current.counters[metric.ordinal()].sum());
+            } else {
+                distributions.put(metric.name(), current.distributions[metric.ordinal()].snapshot());
+            }
+        }
+        Map<String, Long> stations = new TreeMap<>();
+        current.stations.forEach((station, predictions) -> stations.put(station, predictions.sum()));
+        return new MetricsSnapshot(System.currentTimeMillis() - current.since, counters, distributions, stations);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return getSnapshot().getCounters();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        getSnapshot().getDistributions().forEach((name, distribution) -> counts.put(name, distribution.getCount()));
+        return counts;
+    }
+
+    /**
+     * @return Map<String, Double> timers in microseconds, histograms as recorded
+     */
+    @Override
+    public Map<String, Double> getMeans() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        getSnapshot().getDistributions().forEach((name, distribution) -> means.put(name, distribution.getMean() / scale(name)));
+        return means;
+    }
+
+    /**
+     * @return Map<String, Long> timers in microseconds, histograms as recorded
+     */
+    @Override
+    public Map<String, Long> getP99s() {
+        Map<String, Long> p99s = new LinkedHashMap<>();
+        getSnapshot().getDistributions().forEach((name, distribution) -> p99s.put(name, distribution.getP99() / scale(name)));
+        return p99s;
+    }
+
+    /**
+     * @return Map<String, Long> timers in microseconds, histograms as recorded
+     */
+    @Override
+    public Map<String, Long> getMaxima() {
+        Map<String, Long> maxima = new LinkedHashMap<>();
+        getSnapshot().getDistributions().forEach((name, distribution) -> maxima.put(name, distribution.getMax() / scale(name)));
+        return maxima;
+    }
+
+    @Override
+    public Map<String, Long> getStationPredictions() {
+        return getSnapshot().getStationPredictions();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - state.since;
+    }
+
+    @Override
+    public void reset() {
+        state = new State();
+    }
+
+    private static long scale(String name) {
+        return Metric.valueOf(name).getKind() == Metric.Kind.TIMER ? 1000L : 1L;
+    }
+
+    private static class State {
+        private final long since = System.currentTimeMillis();
+        private final LongAdder[] counters = new LongAdder[METRICS.length];
+        private final Distribution[] distributions = new Distribution[METRICS.length];
+        private final ConcurrentHashMap<String, LongAdder> stations = new ConcurrentHashMap<>();
+
+        private State() {
+            for (int i = 0; i < METRICS.length; i++) {
+                counters[i] = new LongAdder();
+                distributions[i] = new Distribution();
+            }
+        }
+    }
+
+    /**
+     * Bucket b counts the values in [2^b, 2^(b+1)), bucket 0 also the values below 1
+     */
+    private static class Distribution {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private Distribution() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long value) {
+            buckets[value <= 1L ? 0 : 63 - Long.numberOfLeadingZeros(value)].increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private MetricsSnapshot.Distribution snapshot() {
+            long[] counts = new long[buckets.length];
+            long count = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long maximum = max.get();
+            return new MetricsSnapshot.Distribution(count, sum.sum(), maximum,
+                    percentile(counts, count, 0.50, maximum), percentile(counts, count, 0.90, maximum), percentile(counts, count, 0.99, maximum));
+        }
+
+        // upper bound of the bucket holding the percentile, capped by the max
+        private static long percentile(long[] counts, long count, double percentile, long maximum) {
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                    return Math.min(upper, maximum);
+                }
+            }
+            return 0L;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.github.jtides.util;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link TideMetrics}, registered as {@value Metrics#OBJECT_NAME}
+ */
+public interface TideMetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeans();
+
+    Map<String, Long> getP99s();
+
+    Map<String, Long> getMaxima();
+
+    Map<String, Long> getStationPredictions();
+
+    long getElapsedMillis();
+
+    void reset();
+
+}
@@ -143,14 +143,13 @@ public class TideUtilities {
         double value = 0d;
 
         LocalDateTime jan1st = LocalDate.of(date.getYear(), Month.JANUARY, 1).atStartOfDay();
-        TimeZone timeZone = TimeZone.getTimeZone(station.getTimeZone());
-        ZoneId zoneId = timeZone.toZoneId();
+        ZoneId zoneId = station.getZoneId();
 
-        long d1 = date.atZone(zoneId).toInstant().toEpochMilli();
-        long j1 = jan1st.atZone(zoneId).toInstant().toEpochMilli();
+        long d1 = date.atZone(zoneId).toEpochSecond();
+        long j1 = jan1st.atZone(zoneId).toEpochSecond();
 
         double stationBaseHeight = station.getBaseHeight();
-        long nbSecSinceJan1st = (d1 - j1) / 1000L;
+        long nbSecSinceJan1st = d1 - j1;
         double timeOffset = nbSecSinceJan1st * 0.00027777777777777778D;
         value = stationBaseHeight;
         for (int i = 0; i < constSpeed.size(); i++) {
@@ -237,7 +236,7 @@ public class TideUtilities {
                 max = Math.max(max, d);
                 min = Math.min(min, d);
 
-                date.plusHours(2);
+                date = date.plusHours(2);
             }
             minMax[MIN_POS] = min;
             minMax[MAX_POS] = max;
@@ -257,7 +256,7 @@ public class TideUtilities {
                 double d = getWaterHeight(date, station, constSpeed);
                 max = Math.max(max, d);
                 min = Math.min(min, d);
-                date.plusHours(2);
+                date = date.plusHours(2);
             }
             minMax[MIN_POS] = min;
             minMax[MAX_POS] = max;
@@ -322,7 +321,8 @@ public class TideUtilities {
         return harmonicsConstituentsList;
     }
 
-    private static void addStationToTree(TideStation station, TreeMap<String, StationTreeNode> currentTree) {
+    // time zone region / time zone city / name parts, a node takes the station type of the first station going through it
+    static void addStationToTree(TideStation station, TreeMap<String, StationTreeNode> currentTree) {
         String timeZoneLabel = "";
         try {
             timeZoneLabel = station.getTimeZone().substring(0, station.getTimeZone().indexOf("/"));
@@ -354,7 +354,9 @@ public class TideUtilities {
             }
             currentTree = stationTreeNode.getSubTree();
         }
-        stationTreeNode.setFullStationName(station.getFullName());
+        if (stationTreeNode != null) {
+            stationTreeNode.setFullStationName(station.getFullName());
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.Constituents;
+import com.github.jtides.services.XMLDataLoader;
+import com.github.jtides.util.AstronomicalArguments;
+
+/**
+ * Run this class: the computed equilibrium arguments and node factors are compared with the table of constituents.xml
+ * for every constituent and year it covers, the largest differences are printed. Exits with 1 past the tolerances.
+ * LICENSE: MIT
+ */
+public class AstronomicalArgumentsCheck {
+
+    private final static double MAX_DEGREES = 1.5D;
+    private final static double MAX_FACTOR = 0.015D;
+
+    public static void main(String[] args) {
+        Constituents constituents = new XMLDataLoader().loadConstituentsFromXml();
+        int failures = 0;
+        double worstDegrees = 0D;
+        double worstFactor = 0D;
+        for (int id = 0; id < constituents.size(); id++) {
+            String name = constituents.getName(id);
+            if (!AstronomicalArguments.isDefined(name)) {
+                System.out.println(name + ": not defined");
+                failures++;
+                continue;
+            }
+            double degrees = 0D;
+            double factor = 0D;
+            for (int year = constituents.getFirstYear(); year <= constituents.getLastYear(); year++) {
+                AstronomicalArguments computed = AstronomicalArguments.forYear(year);
+                double difference = Math.abs(computed.getEquilibriumArgument(name) - constituents.getEquilibrium(id, year)) % 360D;
+                degrees = Math.max(degrees, Math.min(difference, 360D - difference));
+                factor = Math.max(factor, Math.abs(computed.getNodeFactor(name) - constituents.getFactor(id, year)));
+            }
+            boolean failed = degrees > MAX_DEGREES || factor > MAX_FACTOR;
+            System.out.printf("%-8s %6.3f %7.4f%s%n", name, degrees, factor, failed ? "  FAILED" : "");
+            failures += failed ? 1 : 0;
+            worstDegrees = Math.max(worstDegrees, degrees);
+            worstFactor = Math.max(worstFactor, factor);
+        }
+        System.out.printf("%d constituents, %d-%d, worst %.3f deg %.4f, %d failures%n", constituents.size(),
+                constituents.getFirstYear(), constituents.getLastYear(), worstDegrees, worstFactor, failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+}
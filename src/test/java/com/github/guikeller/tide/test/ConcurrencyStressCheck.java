@@ -0,0 +1,153 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.api.TideApi;
+import com.github.jtides.models.StationType;
+import com.github.jtides.models.TimedValue;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run this class: one shared TideApi is hammered by many threads (and a service reloaded under its readers),
+ * every answer is compared with the one computed by a single thread first. Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class ConcurrencyStressCheck {
+
+    private final static int THREADS = 16;
+    private final static int CALLS_PER_THREAD = 400;
+    private final static String[] STATIONS = {
+            "Aba, Nagasaki, Japan", "Brest", "San Francisco", "Seattle", "Honolulu", "Boston"};
+    private final static LocalDate[] DATES = {
+            LocalDate.of(2019, 12, 31), LocalDate.of(2020, 1, 1), LocalDate.of(2020, 3, 29),
+            LocalDate.of(2020, 6, 15), LocalDate.of(2020, 11, 1), LocalDate.of(2021, 2, 28)};
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong calls = new AtomicLong();
+
+    public void sharedApi() throws Exception {
+        TideApi api = new TideApi();
+        List<List<TimedValue>> highLows = new ArrayList<>();
+        List<List<TimedValue>> hourly = new ArrayList<>();
+        for (String station : STATIONS) {
+            for (LocalDate date : DATES) {
+                highLows.add(api.getTideHeightAtTimeAndPlace(station, date));
+                hourly.add(api.getHourlyTides(station, date));
+            }
+        }
+        int stationCount = api.getStations().size();
+        int treeSize = api.getStationsTree().size();
+        List<String> nearest = api.getNearestStations(48.38, -4.49, 5, StationType.ANY);
+
+        run("shared TideApi", random -> {
+            int i = random.nextInt(STATIONS.length);
+            int j = random.nextInt(DATES.length);
+            switch (random.nextInt(5)) {
+                case 0:
+                    check(same(highLows.get(i * DATES.length + j), api.getTideHeightAtTimeAndPlace(STATIONS[i], DATES[j])), "high/low");
+                    break;
+                case 1:
+                    check(same(hourly.get(i * DATES.length + j), api.getHourlyTides(STATIONS[i], DATES[j])), "hourly");
+                    break;
+                case 2:
+                    check(api.getStationsTree().size() == treeSize, "tree");
+                    break;
+                case 3:
+                    check(api.getStations().size() == stationCount, "stations");
+                    break;
+                default:
+                    check(nearest.equals(api.getNearestStations(48.38, -4.49, 5, StationType.ANY)), "nearest");
+            }
+        });
+    }
+
+    public void reloadUnderReaders() throws Exception {
+        XMLTideStationService service = new XMLTideStationService();
+        TideCalculator calculator = new TideCalculator(service);
+        List<TimedValue> expected = calculator.getHighAndLowTides("Brest", DATES[3]);
+        Thread reloader = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                service.reload();
+            }
+        });
+        reloader.start();
+        run("reload under readers", random -> {
+            try {
+                check(same(expected, calculator.getHighAndLowTides("Brest", DATES[3])), "reloaded high/low");
+            } catch (Exception ex) {
+                check(false, ex.toString());
+            }
+        });
+        reloader.join();
+    }
+
+    private void run(String name, Call call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            executor.execute(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int c = 0; c < CALLS_PER_THREAD; c++) {
+                        call.call(random);
+                        calls.incrementAndGet();
+                    }
+                } catch (Throwable ex) {
+                    check(false, ex.toString());
+                }
+            });
+        }
+        long before = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        System.out.println(name + ": " + THREADS + " threads, " + (System.nanoTime() - before) / 1000000 + " ms, failures so far " + failures.get());
+    }
+
+    // TimedValue.equals only compares the times
+    private static boolean same(List<TimedValue> expected, List<TimedValue> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            TimedValue e = expected.get(i);
+            TimedValue a = actual.get(i);
+            if (!e.getCalendar().equals(a.getCalendar()) || e.getValue() != a.getValue() || e.getType() != a.getType()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void check(boolean ok, String what) {
+        if (!ok) {
+            failures.incrementAndGet();
+            System.err.println("Mismatch: " + what);
+        }
+    }
+
+    private interface Call {
+        void call(Random random) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConcurrencyStressCheck check = new ConcurrencyStressCheck();
+        check.sharedApi();
+        check.reloadUnderReaders();
+        System.out.println(check.calls.get() + " calls, " + check.failures.get() + " failures");
+        System.exit(check.failures.get() == 0 ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Run this class: {@link XMLTideStationService#correctHarmonics(TideStation, int)} leaves the loaded stations as they are
+ * and returns copies corrected with the node factors and equilibrium arguments of the year, also when the station
+ * passed is a copy corrected for another year. Years from the table of constituents.xml and computed ones are used.
+ * Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class CorrectHarmonicsCheck {
+
+    private final static int[] YEARS = {1990, 2020, 2021, 2037, 1950, 2050};
+    private final static int STATION_STEP = 25;
+    private final static String RESERVED_KEY = "x";
+    private final static double MAX_DIFFERENCE = 1E-12D;
+
+    private final XMLTideStationService tideService = new XMLTideStationService();
+    private int stations = 0;
+    private int failures = 0;
+
+    public static void main(String[] args) {
+        CorrectHarmonicsCheck check = new CorrectHarmonicsCheck();
+        List<TideStation> loaded = new ArrayList<>(check.tideService.getStations());
+        loaded.sort(Comparator.comparing(TideStation::getFullName));
+        for (int i = 0; i < loaded.size(); i += STATION_STEP) {
+            check.station(loaded.get(i));
+        }
+        System.out.println(check.stations + " stations, " + check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void station(TideStation station) {
+        stations++;
+        double[] before = values(station);
+        int fixedBefore = station.yearHarmonicsFixed();
+        TideStation previous = null;
+        for (int year : YEARS) {
+            TideStation corrected = tideService.correctHarmonics(station, year);
+            corrected(station, corrected, year);
+            // from a copy corrected for another year, the correction starts again from the loaded harmonics
+            if (previous != null) {
+                TideStation again = tideService.correctHarmonics(previous, year);
+                corrected(station, again, year);
+                same(station, "copy of " + previous.yearHarmonicsFixed() + " corrected for " + year, values(corrected), values(again));
+            }
+            same(station, "same year", values(corrected), values(tideService.correctHarmonics(corrected, year)));
+            previous = corrected;
+        }
+        same(station, "loaded harmonics", before, values(station));
+        if (station.yearHarmonicsFixed() != fixedBefore) {
+            fail(station, "loaded station marked as corrected for " + station.yearHarmonicsFixed());
+        }
+    }
+
+    private void corrected(TideStation station, TideStation corrected, int year) {
+        if (corrected == station || corrected.yearHarmonicsFixed() != year) {
+            fail(station, "not a copy corrected for " + year + " (" + corrected.yearHarmonicsFixed() + ")");
+            return;
+        }
+        List<Harmonic> harmonics = station.getHarmonics();
+        double[] expected = new double[harmonics.size() * 2];
+        for (int i = 0; i < harmonics.size(); i++) {
+            Harmonic harmonic = harmonics.get(i);
+            boolean reserved = RESERVED_KEY.equals(harmonic.getName());
+            double amplitudeFix = reserved ? 1D : tideService.getAmplitudeFix(year, harmonic.getName());
+            double epochFix = reserved ? 0D : tideService.getEpochFix(year, harmonic.getName());
+            expected[i * 2] = harmonic.getAmplitude() * amplitudeFix;
+            expected[i * 2 + 1] = harmonic.getEpoch() - epochFix;
+        }
+        same(station, "corrected for " + year, expected, values(corrected));
+    }
+
+    // amplitude and epoch of each harmonic
+    private static double[] values(TideStation station) {
+        List<Harmonic> harmonics = station.getHarmonics();
+        double[] values = new double[harmonics.size() * 2];
+        for (int i = 0; i < harmonics.size(); i++) {
+            values[i * 2] = harmonics.get(i).getAmplitude();
+            values[i * 2 + 1] = harmonics.get(i).getEpoch();
+        }
+        return values;
+    }
+
+    private void same(TideStation station, String what, double[] expected, double[] actual) {
+        boolean same = expected.length == actual.length;
+        for (int i = 0; same && i < expected.length; i++) {
+            same = Math.abs(expected[i] - actual[i]) <= MAX_DIFFERENCE * Math.max(1D, Math.abs(expected[i]));
+        }
+        if (!same) {
+            fail(station, what);
+        }
+    }
+
+    private void fail(TideStation station, String what) {
+        failures++;
+        System.out.println(station.getFullName() + ": " + what + "  FAILED");
+    }
+
+}
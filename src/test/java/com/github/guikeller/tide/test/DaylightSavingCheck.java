@@ -0,0 +1,80 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.api.TideApi;
+import com.github.jtides.models.TideSeries;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+
+/**
+ * Run this class: on the days the clocks change (and the days around them), the hourly water heights are evenly
+ * spaced instants from the local start of the day: 23 values when the clocks go forward, 25 when they go back,
+ * each equal to the water height at its instant. Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class DaylightSavingCheck {
+
+    private final static String[] STATIONS = {"Brest", "Boston", "Seattle", "Honolulu"};
+    private final static int YEAR = 2020;
+    private final static long HOUR = 3600L;
+    private final static double MAX_DIFFERENCE = 1E-9D;
+
+    private final TideApi api = new TideApi();
+    private final XMLTideStationService tideService = new XMLTideStationService();
+    private int failures = 0;
+
+    public static void main(String[] args) {
+        DaylightSavingCheck check = new DaylightSavingCheck();
+        for (String station : STATIONS) {
+            ZoneId zone = check.tideService.getStationIndex().find(station).getZoneId();
+            // a day without change, then the days of the transitions of the year
+            check.day(station, zone, LocalDate.of(YEAR, 6, 15));
+            Instant at = LocalDate.of(YEAR, 1, 1).atStartOfDay(zone).toInstant();
+            for (ZoneOffsetTransition transition = zone.getRules().nextTransition(at);
+                 transition != null && transition.getInstant().atZone(zone).getYear() == YEAR;
+                 transition = zone.getRules().nextTransition(transition.getInstant())) {
+                LocalDate day = transition.getInstant().atZone(zone).toLocalDate();
+                check.day(station, zone, day);
+                check.range(station, zone, day.minusDays(1), day.plusDays(1));
+            }
+        }
+        System.out.println(check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void day(String station, ZoneId zone, LocalDate day) {
+        int hours = (int) ((dayStart(day.plusDays(1), zone) - dayStart(day, zone)) / HOUR);
+        int list = api.getTides(station, day, day, 60).size();
+        int hourly = api.getHourlyTides(station, day).size();
+        boolean same = range(station, zone, day, day) && list == hours && hourly == hours;
+        System.out.println(station + " " + day + ": " + hours + " hours, getTides " + list + ", getHourlyTides " + hourly
+                + (same ? "" : "  FAILED"));
+        failures += same ? 0 : 1;
+    }
+
+    // every hour from the local start of from to the local end of to, at the right instant
+    private boolean range(String station, ZoneId zone, LocalDate from, LocalDate to) {
+        long start = dayStart(from, zone);
+        int hours = (int) ((dayStart(to.plusDays(1), zone) - start) / HOUR);
+        TideSeries series = api.getTideSeries(station, from, to, 60);
+        boolean same = series.size() == hours;
+        for (int i = 0; same && i < hours; i++) {
+            long epochSecond = start + i * HOUR;
+            same = series.getEpochMilli(i) == epochSecond * 1000L
+                    && Math.abs(series.getValue(i) - api.getWaterHeight(station, epochSecond)) <= MAX_DIFFERENCE;
+        }
+        if (!same) {
+            failures++;
+            System.out.println(station + " " + from + " - " + to + ": " + series.size() + " values for " + hours + " hours  FAILED");
+        }
+        return same;
+    }
+
+    private static long dayStart(LocalDate day, ZoneId zone) {
+        return day.atStartOfDay(zone).toEpochSecond();
+    }
+
+}
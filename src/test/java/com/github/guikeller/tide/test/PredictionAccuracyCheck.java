@@ -0,0 +1,190 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.Coefficient;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideSeries;
+import com.github.jtides.models.TideType;
+import com.github.jtides.services.CompiledStation;
+import com.github.jtides.services.ExtremaFinder;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run this class: the predictions are checked against slower, simpler computations.
+ * <ul>
+ * <li>Around Jan 1st, where two years are mixed, the water height and its slope have no step
+ * (second by second, at the start, middle and end of the mix).</li>
+ * <li>The high and low waters match the local extrema of a scan every {@value #SCAN_SECONDS} seconds, except pairs
+ * closer than the {@value ExtremaFinder#DEFAULT_GRID_MINUTES} minutes grid (documented in {@link ExtremaFinder}).</li>
+ * <li>Batched water heights (phase rotation) match the ones computed one by one, within the documented bound of
+ * {@link CompiledStation#getWaterHeights(double[], int, int, double, double)} plus the rounding of the phase argument.</li>
+ * </ul>
+ * Exits with 1 on any failure.
+ * LICENSE: MIT
+ */
+public class PredictionAccuracyCheck {
+
+    private final static String[] STATIONS = {"Brest", "San Francisco", "Honolulu", "Southampton", "Seattle", "Boston"};
+    private final static int[] NEW_YEARS = {2020, 2021};
+    // steps of 1 s: what a smooth curve can change at most, in station unit
+    private final static double MAX_VALUE_STEP = 1E-6D;
+    private final static double MAX_SLOPE_STEP = 1E-6D;
+    private final static LocalDate[] EXTREMA_FROM = {LocalDate.of(2019, 12, 30), LocalDate.of(2020, 6, 14)};
+    private final static int EXTREMA_DAYS = 4;
+    private final static long SCAN_SECONDS = 10L;
+    private final static long MAX_EXTREMUM_MILLIS = (SCAN_SECONDS + 1L) * 1000L;
+    private final static double MAX_EXTREMUM_DIFFERENCE = 1E-4D;
+    private final static double[] BATCH_STARTS = {0D, 100D, 4000D, 8700D};
+    private final static int BATCH_COUNT = 20_000;
+    private final static double BATCH_STEP_HOURS = 1D / 60D;
+    private final static double ULP = Math.pow(2D, -53D);
+
+    private final XMLTideStationService tideService = new XMLTideStationService();
+    private final TideCalculator calculator = new TideCalculator(tideService);
+    private int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        PredictionAccuracyCheck check = new PredictionAccuracyCheck();
+        for (String station : STATIONS) {
+            check.newYears(station);
+            check.extrema(station);
+            check.batches(station);
+        }
+        System.out.println(check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void newYears(String station) {
+        ZoneId zone = tideService.getStationIndex().find(station).getZoneId();
+        long half = TideCalculator.BLEND_SECONDS / 2;
+        double valueStep = 0D;
+        double slopeStep = 0D;
+        for (int year : NEW_YEARS) {
+            long jan1st = LocalDate.of(year, 1, 1).atStartOfDay(zone).toEpochSecond();
+            for (long at : new long[]{jan1st - half, jan1st, jan1st + half}) {
+                double[] h = new double[5];
+                for (int i = 0; i < h.length; i++) {
+                    h[i] = calculator.getWaterHeight(station, at - 2 + i);
+                }
+                // h[2] against the line through the two values before, slope before against slope after
+                valueStep = Math.max(valueStep, Math.abs(h[2] - (2 * h[1] - h[0])));
+                slopeStep = Math.max(slopeStep, Math.abs((h[4] - h[3]) - (h[1] - h[0])));
+            }
+        }
+        boolean failed = valueStep > MAX_VALUE_STEP || slopeStep > MAX_SLOPE_STEP;
+        System.out.printf("%-14s new years: value step %.2e, slope step %.2e%s%n", station, valueStep, slopeStep, failed ? "  FAILED" : "");
+        failures += failed ? 1 : 0;
+    }
+
+    private void extrema(String station) {
+        ZoneId zone = tideService.getStationIndex().find(station).getZoneId();
+        int found = 0;
+        int cancelled = 0;
+        int differences = 0;
+        for (LocalDate from : EXTREMA_FROM) {
+            LocalDate to = from.plusDays(EXTREMA_DAYS - 1);
+            TideSeries series = calculator.getHighAndLowTideSeries(station, from, to);
+            long start = from.atStartOfDay(zone).toEpochSecond();
+            long end = to.plusDays(1).atStartOfDay(zone).toEpochSecond();
+            // an hour more on each side, for the extrema at the edges
+            List<long[]> scanned = scan(station, start - 3600L, end + 3600L);
+            boolean[] matched = new boolean[scanned.size()];
+            for (int i = 0; i < series.size(); i++) {
+                int match = -1;
+                for (int j = 0; j < scanned.size() && match < 0; j++) {
+                    long[] extremum = scanned.get(j);
+                    if (Math.abs(extremum[0] - series.getEpochMilli(i)) <= MAX_EXTREMUM_MILLIS
+                            && extremum[1] == series.getTypeCode(i)) {
+                        match = j;
+                    }
+                }
+                if (match < 0 || !close(series.getValue(i), Double.longBitsToDouble(scanned.get(match)[2]), series.getType(i))) {
+                    differences++;
+                    System.out.println(station + ": " + series.getType(i) + " at " + series.getEpochMilli(i) + " " + series.getValue(i)
+                            + (match < 0 ? " not in the scan" : " scanned " + Double.longBitsToDouble(scanned.get(match)[2])));
+                } else {
+                    matched[match] = true;
+                    found++;
+                }
+            }
+            long gridMillis = (long) (ExtremaFinder.DEFAULT_GRID_MINUTES * 60000D);
+            for (int j = 0; j < scanned.size(); j++) {
+                long time = scanned.get(j)[0];
+                if (matched[j] || time < start * 1000L || time >= end * 1000L) {
+                    continue;
+                }
+                boolean pair = j > 0 && time - scanned.get(j - 1)[0] < gridMillis
+                        || j + 1 < scanned.size() && scanned.get(j + 1)[0] - time < gridMillis;
+                if (pair) {
+                    cancelled++;
+                } else {
+                    differences++;
+                    System.out.println(station + ": scanned extremum at " + time + " not found");
+                }
+            }
+        }
+        System.out.printf("%-14s extrema: %d found, %d in pairs closer than the grid, %d differences%s%n",
+                station, found, cancelled, differences, differences == 0 ? "" : "  FAILED");
+        failures += differences == 0 ? 0 : 1;
+    }
+
+    // (epoch milli, type code, value bits) of the local extrema of the heights every SCAN_SECONDS
+    private List<long[]> scan(String station, long start, long end) {
+        List<long[]> extrema = new ArrayList<>();
+        double before = calculator.getWaterHeight(station, start);
+        double current = calculator.getWaterHeight(station, start + SCAN_SECONDS);
+        for (long at = start + SCAN_SECONDS; at + SCAN_SECONDS < end; at += SCAN_SECONDS) {
+            double after = calculator.getWaterHeight(station, at + SCAN_SECONDS);
+            TideType type = current > before && current >= after ? TideType.HW : current < before && current <= after ? TideType.LW : null;
+            if (type != null) {
+                extrema.add(new long[]{at * 1000L, TideSeries.typeCode(type), Double.doubleToLongBits(current)});
+            }
+            before = current;
+            current = after;
+        }
+        return extrema;
+    }
+
+    // the refined extremum is at least as high (or low) as the best sample next to it
+    private static boolean close(double found, double scanned, TideType type) {
+        double beyond = type == TideType.HW ? found - scanned : scanned - found;
+        return beyond > -1E-9D && beyond <= MAX_EXTREMUM_DIFFERENCE;
+    }
+
+    private void batches(String station) throws Exception {
+        Map<String, Double> speeds = new HashMap<>();
+        for (Coefficient coefficient : tideService.getSiteConstSpeed()) {
+            speeds.putIfAbsent(coefficient.getName(), coefficient.getValue());
+        }
+        CompiledStation compiled = calculator.getCompiledStation(station, NEW_YEARS[0]);
+        double ratio = 0D;
+        for (double start : BATCH_STARTS) {
+            double[] values = new double[BATCH_COUNT];
+            compiled.getWaterHeights(values, 0, BATCH_COUNT, start, BATCH_STEP_HOURS);
+            double last = Math.abs(start + BATCH_COUNT * BATCH_STEP_HOURS);
+            double bound = 0D;
+            for (Harmonic harmonic : compiled.getStation().getHarmonics()) {
+                Double speed = speeds.get(harmonic.getName());
+                double amplitude = Math.abs(harmonic.getAmplitude());
+                // documented bound, then the phase argument rounded in both computations
+                bound += amplitude * CompiledStation.REANCHOR_INTERVAL * 4D * ULP;
+                bound += speed == null ? 0D : amplitude * 6D * ULP * (Math.abs(speed) * last + Math.abs(harmonic.getEpoch()));
+            }
+            for (int i = 0; i < BATCH_COUNT; i++) {
+                double difference = Math.abs(values[i] - compiled.getWaterHeight(start + i * BATCH_STEP_HOURS));
+                ratio = Math.max(ratio, difference / bound);
+            }
+        }
+        boolean failed = ratio > 1D;
+        System.out.printf("%-14s batches: worst difference %.2f of the bound%s%n", station, ratio, failed ? "  FAILED" : "");
+        failures += failed ? 1 : 0;
+    }
+
+}
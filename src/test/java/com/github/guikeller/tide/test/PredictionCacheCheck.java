@@ -0,0 +1,173 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.TideSeries;
+import com.github.jtides.services.DailyExtremaStore;
+import com.github.jtides.services.PredictionCache;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run this class: the daily high and low waters of the cache (memory tier, then a fresh extrema file, then the same
+ * file opened again) are compared with the ones computed directly, and the allocation of cached reads is measured.
+ * The file opened for another data version must be empty, and a small file shared by threads that read and write
+ * its station-years while it is cleared must only return the computed days.
+ * Exits with 1 on any difference or allocation.
+ * LICENSE: MIT
+ */
+public class PredictionCacheCheck {
+
+    private final static String[] STATIONS = {"Aba, Nagasaki, Japan", "Brest", "San Francisco", "Seattle", "Honolulu", "Boston"};
+    private final static LocalDate[] DATES = {
+            LocalDate.of(2019, 12, 31), LocalDate.of(2020, 1, 1), LocalDate.of(2020, 3, 29),
+            LocalDate.of(2020, 12, 31), LocalDate.of(2045, 6, 15), LocalDate.of(1995, 10, 29)};
+    // extrema found over a year or over a day are refined from different grids
+    private final static long MAX_MILLIS = 50L;
+    private final static double MAX_DIFFERENCE = 1E-6D;
+    private final static int READS = 100_000;
+    private final static int THREADS = 4;
+    private final static int RACE_STATIONS = 2;
+    private final static int CLEARS = 20;
+
+    private final TideCalculator calculator = new TideCalculator(new XMLTideStationService());
+    private int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        PredictionCacheCheck check = new PredictionCacheCheck();
+        Path file = Files.createTempFile("extrema", ".bin");
+        long dataVersion = PredictionCache.getDataVersion(check.calculator);
+        try {
+            check.compare("memory", new PredictionCache(check.calculator, 16, 16, null));
+            try (DailyExtremaStore store = DailyExtremaStore.open(file, 64, dataVersion)) {
+                check.compare("new file", new PredictionCache(check.calculator, 16, 16, store));
+            }
+            try (DailyExtremaStore store = DailyExtremaStore.open(file, 64, dataVersion)) {
+                System.out.println("reopened file holds " + store.getStats().getSize() + " station-years");
+                PredictionCache cache = new PredictionCache(check.calculator, 16, 16, store);
+                check.compare("reopened file", cache);
+                check.allocation(cache);
+            }
+            try (DailyExtremaStore store = DailyExtremaStore.open(file, 2, dataVersion)) {
+                check.races(store);
+            }
+            try (DailyExtremaStore store = DailyExtremaStore.open(file, 64, dataVersion + 1)) {
+                int size = store.getStats().getSize();
+                System.out.println("file of another data version holds " + size + " station-years");
+                check.failures += size == 0 ? 0 : 1;
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println(check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void compare(String tier, PredictionCache cache) {
+        long[] times = new long[DailyExtremaStore.MAX_PER_DAY];
+        double[] values = new double[times.length];
+        byte[] types = new byte[times.length];
+        for (String station : STATIONS) {
+            for (LocalDate date : DATES) {
+                TideSeries expected = calculator.getHighAndLowTideSeries(station, date, date);
+                int count = cache.getHighAndLowTides(station, date, times, values, types);
+                TideSeries cached = cache.get(station, date, PredictionCache.Mode.HIGH_LOW);
+                boolean same = count == expected.size() && cached.size() == expected.size();
+                for (int i = 0; same && i < count; i++) {
+                    same = Math.abs(times[i] - expected.getEpochMilli(i)) <= MAX_MILLIS
+                            && Math.abs(values[i] - expected.getValue(i)) <= MAX_DIFFERENCE
+                            && types[i] == expected.getTypeCode(i)
+                            && times[i] == cached.getEpochMilli(i) && types[i] == cached.getTypeCode(i);
+                }
+                if (!same) {
+                    failures++;
+                    System.out.println(tier + ": " + station + " " + date + " expected " + expected
+                            + " got " + count + " " + Arrays.toString(Arrays.copyOf(times, Math.max(0, count))));
+                }
+            }
+        }
+        System.out.println(tier + ": " + cache.getCacheStats() + (cache.getStore() == null ? "" : ", file " + cache.getStore().getStats()));
+    }
+
+    private void races(DailyExtremaStore store) throws InterruptedException {
+        TideSeries[][] expected = new TideSeries[RACE_STATIONS][DATES.length];
+        for (int s = 0; s < RACE_STATIONS; s++) {
+            for (int d = 0; d < DATES.length; d++) {
+                expected[s][d] = calculator.getHighAndLowTideSeries(STATIONS[s], DATES[d], DATES[d]);
+            }
+        }
+        AtomicInteger differences = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                // a single day in memory: the reads go to the file
+                PredictionCache cache = new PredictionCache(calculator, 1, 1, store);
+                long[] times = new long[DailyExtremaStore.MAX_PER_DAY];
+                double[] values = new double[times.length];
+                byte[] types = new byte[times.length];
+                Random random = new Random(seed);
+                while (!done.get()) {
+                    int s = random.nextInt(RACE_STATIONS);
+                    // the days of 2020, one station-year per slot
+                    int d = 1 + random.nextInt(3);
+                    TideSeries day = expected[s][d];
+                    int count = cache.getHighAndLowTides(STATIONS[s], DATES[d], times, values, types);
+                    boolean same = count == day.size();
+                    for (int j = 0; same && j < count; j++) {
+                        same = Math.abs(times[j] - day.getEpochMilli(j)) <= MAX_MILLIS && types[j] == day.getTypeCode(j);
+                    }
+                    if (!same) {
+                        differences.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (int i = 0; i < CLEARS; i++) {
+            Thread.sleep(50L);
+            store.clear();
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("shared small file: " + differences.get() + " differences, file " + store.getStats());
+        failures += differences.get() == 0 ? 0 : 1;
+    }
+
+    private void allocation(PredictionCache cache) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] times = new long[DailyExtremaStore.MAX_PER_DAY];
+        double[] values = new double[times.length];
+        byte[] types = new byte[times.length];
+        // days read from the file into the caller arrays are not copied to the memory tier of this one
+        PredictionCache fileOnly = new PredictionCache(calculator, 16, 1, cache.getStore());
+        for (PredictionCache tier : new PredictionCache[]{cache, fileOnly}) {
+            LocalDate day = tier == cache ? DATES[2] : DATES[3];
+            for (int i = 0; i < READS; i++) {
+                tier.getHighAndLowTides(STATIONS[1], day, times, values, types);
+            }
+            long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < READS; i++) {
+                tier.getHighAndLowTides(STATIONS[1], day, times, values, types);
+            }
+            long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            String name = tier == cache ? "memory hits" : "file hits";
+            System.out.printf("%s: %.2f bytes per read%n", name, (double) bytes / READS);
+            // a few bytes in total for the measure itself
+            if (bytes > 1024) {
+                failures++;
+            }
+        }
+    }
+
+}
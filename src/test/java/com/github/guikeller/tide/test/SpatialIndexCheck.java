@@ -0,0 +1,163 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.StationType;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.StationSpatialIndex;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Run this class: the nearest, radius and bounding box searches of {@link StationSpatialIndex} are checked against
+ * scans of all the stations, for random positions (poles and the 180th meridian included) and each station type.
+ * Distances are compared within {@value #MAX_DIFFERENCE_KM} km, stations at the same distance may come in any order.
+ * Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class SpatialIndexCheck {
+
+    private final static long SEED = 20200615L;
+    private final static int QUERIES = 500;
+    private final static int[] KS = {1, 5, 50};
+    private final static double[] RADII_KM = {10D, 100D, 1000D};
+    private final static double MAX_DIFFERENCE_KM = 1E-6D;
+    private final static double[][] POSITIONS = {{90D, 0D}, {-90D, 0D}, {0D, 180D}, {0D, -180D}, {21.3D, -157.9D}, {48.4D, -4.5D}};
+
+    private final XMLTideStationService tideService = new XMLTideStationService();
+    private final StationSpatialIndex index = tideService.getSpatialIndex();
+    private final List<TideStation> stations = new ArrayList<>(tideService.getStations());
+    private int queries = 0;
+    private int failures = 0;
+
+    public static void main(String[] args) {
+        SpatialIndexCheck check = new SpatialIndexCheck();
+        Random random = new Random(SEED);
+        List<double[]> positions = new ArrayList<>();
+        for (double[] position : POSITIONS) {
+            positions.add(position);
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            // half near a station, where the tree is dense
+            if (random.nextBoolean()) {
+                TideStation station = check.stations.get(random.nextInt(check.stations.size()));
+                positions.add(new double[]{station.getLatitude() + random.nextGaussian(), station.getLongitude() + random.nextGaussian()});
+            } else {
+                positions.add(new double[]{Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)), 360 * random.nextDouble() - 180});
+            }
+        }
+        for (StationType type : StationType.values()) {
+            for (double[] position : positions) {
+                check.nearest(position[0], position[1], type);
+                check.withinRadius(position[0], position[1], type);
+            }
+            for (int i = 0; i < QUERIES; i++) {
+                double minLatitude = 180 * random.nextDouble() - 90;
+                double maxLatitude = Math.min(90D, minLatitude + 40 * random.nextDouble());
+                double minLongitude = 360 * random.nextDouble() - 180;
+                // a quarter of the boxes cross the 180th meridian
+                double maxLongitude = i % 4 == 0 ? minLongitude - 360 * random.nextDouble() : Math.min(180D, minLongitude + 60 * random.nextDouble());
+                check.inBoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude, type);
+            }
+        }
+        System.out.println(check.queries + " queries, " + check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void nearest(double latitude, double longitude, StationType type) {
+        Predicate<TideStation> filter = type::matches;
+        List<TideStation> sorted = scan(latitude, longitude, Double.MAX_VALUE, filter);
+        for (int k : KS) {
+            List<TideStation> found = index.nearest(latitude, longitude, k, filter);
+            List<TideStation> expected = sorted.subList(0, Math.min(k, sorted.size()));
+            same("nearest " + k + " " + type + " " + latitude + "," + longitude, latitude, longitude, expected, found);
+        }
+    }
+
+    private void withinRadius(double latitude, double longitude, StationType type) {
+        Predicate<TideStation> filter = type::matches;
+        for (double radius : RADII_KM) {
+            List<TideStation> found = index.withinRadius(latitude, longitude, radius, filter);
+            List<TideStation> expected = scan(latitude, longitude, radius, filter);
+            String what = "radius " + radius + " " + type + " " + latitude + "," + longitude;
+            // a station on the circle, within the rounding of the distances, may be in or out
+            if (found.size() != expected.size()) {
+                List<TideStation> inner = scan(latitude, longitude, radius - MAX_DIFFERENCE_KM, filter);
+                List<TideStation> outer = scan(latitude, longitude, radius + MAX_DIFFERENCE_KM, filter);
+                if (found.size() >= inner.size() && found.size() <= outer.size()) {
+                    expected = outer.subList(0, found.size());
+                }
+            }
+            same(what, latitude, longitude, expected, found);
+        }
+    }
+
+    private void inBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, StationType type) {
+        queries++;
+        boolean wraps = minLongitude > maxLongitude;
+        Set<TideStation> expected = new HashSet<>();
+        for (TideStation station : stations) {
+            double lat = station.getLatitude();
+            double lon = station.getLongitude();
+            boolean inside = lat >= minLatitude && lat <= maxLatitude
+                    && (wraps ? lon >= minLongitude || lon <= maxLongitude : lon >= minLongitude && lon <= maxLongitude);
+            if (inside && type.matches(station)) {
+                expected.add(station);
+            }
+        }
+        List<TideStation> found = index.inBoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude, type::matches);
+        boolean same = found.size() == expected.size() && expected.containsAll(found);
+        for (int i = 1; same && i < found.size(); i++) {
+            same = found.get(i - 1).getLatitude() <= found.get(i).getLatitude();
+        }
+        if (!same) {
+            failures++;
+            System.out.println("box " + minLatitude + "," + minLongitude + " " + maxLatitude + "," + maxLongitude + " " + type
+                    + ": " + found.size() + " stations for " + expected.size() + "  FAILED");
+        }
+    }
+
+    // all the stations within the radius, closest first
+    private List<TideStation> scan(double latitude, double longitude, double radiusKm, Predicate<TideStation> filter) {
+        List<double[]> distances = new ArrayList<>();
+        for (int i = 0; i < stations.size(); i++) {
+            double distance = StationSpatialIndex.distanceKm(latitude, longitude, stations.get(i));
+            if (distance <= radiusKm && filter.test(stations.get(i))) {
+                distances.add(new double[]{distance, i});
+            }
+        }
+        distances.sort((a, b) -> Double.compare(a[0], b[0]));
+        List<TideStation> found = new ArrayList<>(distances.size());
+        for (double[] distance : distances) {
+            found.add(stations.get((int) distance[1]));
+        }
+        return found;
+    }
+
+    // each station once, at the distance of the expected one at the same position: stations at equal distances may differ
+    private void same(String what, double latitude, double longitude, List<TideStation> expected, List<TideStation> found) {
+        queries++;
+        boolean same = found.size() == expected.size() && new HashSet<>(found).size() == found.size();
+        for (int i = 0; same && i < found.size(); i++) {
+            double distance = StationSpatialIndex.distanceKm(latitude, longitude, found.get(i));
+            same = Math.abs(distance - StationSpatialIndex.distanceKm(latitude, longitude, expected.get(i))) <= MAX_DIFFERENCE_KM;
+        }
+        if (!same) {
+            failures++;
+            System.out.println(what + ": " + names(found) + " for " + names(expected) + "  FAILED");
+        }
+    }
+
+    private static List<String> names(List<TideStation> stations) {
+        List<String> names = new ArrayList<>();
+        for (TideStation station : stations) {
+            names.add(station.getFullName());
+        }
+        return names;
+    }
+
+}
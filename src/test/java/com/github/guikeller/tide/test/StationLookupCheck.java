@@ -0,0 +1,168 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.StationIndex;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Run this class: the station name lookups of {@link StationIndex} are checked against scans of all the stations.
+ * <ul>
+ * <li>Every full name and name part, and variants in other cases, without accents or with extra white space,
+ * resolve to the candidates of the first matching rule (exact full name, exact name part, normalized full name,
+ * normalized name part).</li>
+ * <li>Prefixes of names and name parts find the same stations, in the same order, as a sorted scan.</li>
+ * </ul>
+ * Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class StationLookupCheck {
+
+    private final static long SEED = 20200615L;
+    private final static int VARIANTS = 2_000;
+    private final static int PREFIXES = 2_000;
+    private final static int[] LIMITS = {1, 10, 1000};
+    private final static String[] MISSING = {"", "   ", "No such station", "zzzz", "Brest, Francee"};
+
+    private final XMLTideStationService tideService = new XMLTideStationService();
+    private final StationIndex index = tideService.getStationIndex();
+    private final List<TideStation> stations = new ArrayList<>(tideService.getStations());
+    // normalized full name then normalized name parts, per station
+    private final Map<TideStation, List<String>> normalized = new HashMap<>();
+    private int lookups = 0;
+    private int failures = 0;
+
+    public static void main(String[] args) {
+        StationLookupCheck check = new StationLookupCheck();
+        check.stations.sort(Comparator.comparing(TideStation::getFullName));
+        for (TideStation station : check.stations) {
+            List<String> keys = new ArrayList<>();
+            keys.add(StationIndex.normalize(station.getFullName()));
+            station.getNameParts().forEach(part -> keys.add(StationIndex.normalize(part)));
+            check.normalized.put(station, keys);
+        }
+        check.normalize();
+        check.names();
+        check.prefixes();
+        System.out.println(check.lookups + " lookups, " + check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void normalize() {
+        same("normalize", "ile de re, france", StationIndex.normalize("  \u00CEle de  R\u00E9,\tFrance "));
+        same("normalize", "sao paulo", StationIndex.normalize("S\u00C3O PAULO"));
+    }
+
+    private void names() {
+        Set<String> names = new LinkedHashSet<>();
+        for (TideStation station : stations) {
+            names.add(station.getFullName());
+            names.addAll(station.getNameParts());
+        }
+        List<String> all = new ArrayList<>(names);
+        for (String name : all) {
+            candidates(name);
+        }
+        // variants of some of them, resolved by the normalized rules
+        Random random = new Random(SEED);
+        for (int i = 0; i < VARIANTS; i++) {
+            String name = all.get(random.nextInt(all.size()));
+            candidates(name.toUpperCase(Locale.ROOT));
+            candidates(" " + name.replace(" ", "  ") + " ");
+            candidates(StationIndex.normalize(name));
+        }
+        for (String name : MISSING) {
+            candidates(name);
+        }
+        same("find null", null, index.find(null));
+        same("candidates null", 0, index.getCandidates(null).size());
+    }
+
+    private void candidates(String name) {
+        List<String> expected = names(scan(name));
+        same("candidates " + name, expected, names(index.getCandidates(name)));
+        TideStation found = index.find(name);
+        same("find " + name, expected.isEmpty() ? null : expected.get(0), found == null ? null : found.getFullName());
+        same("ambiguous " + name, expected.size() > 1, index.isAmbiguous(name));
+    }
+
+    // the rules of StationIndex, one after the other, over all the stations
+    private List<TideStation> scan(String name) {
+        List<TideStation> found = stations.stream().filter(s -> s.getFullName().equals(name)).limit(1).collect(Collectors.toList());
+        if (found.isEmpty()) {
+            found = stations.stream().filter(s -> s.getNameParts().contains(name)).collect(Collectors.toList());
+        }
+        String key = StationIndex.normalize(name);
+        if (found.isEmpty()) {
+            found = stations.stream().filter(s -> normalized.get(s).get(0).equals(key)).collect(Collectors.toList());
+        }
+        if (found.isEmpty()) {
+            found = stations.stream().filter(s -> normalized.get(s).subList(1, normalized.get(s).size()).contains(key))
+                    .collect(Collectors.toList());
+        }
+        return found;
+    }
+
+    private void prefixes() {
+        Random random = new Random(SEED);
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i < PREFIXES; i++) {
+            TideStation station = stations.get(random.nextInt(stations.size()));
+            List<String> parts = station.getNameParts();
+            String name = parts.isEmpty() || random.nextBoolean() ? station.getFullName() : parts.get(random.nextInt(parts.size()));
+            String prefix = name.substring(0, Math.min(name.length(), 1 + random.nextInt(8)));
+            prefixes.add(random.nextBoolean() ? prefix : prefix.toUpperCase(Locale.ROOT));
+        }
+        prefixes.addAll(Arrays.asList(MISSING));
+        for (String prefix : prefixes) {
+            for (int limit : LIMITS) {
+                same("prefix " + prefix + " / " + limit, scanPrefix(prefix, limit), names(index.findByPrefix(prefix, limit)));
+            }
+        }
+    }
+
+    // every (normalized name, station) pair starting with the prefix, by name then full name, each station once
+    private List<String> scanPrefix(String prefix, int limit) {
+        String key = StationIndex.normalize(prefix);
+        List<Object[]> matches = new ArrayList<>();
+        for (TideStation station : stations) {
+            for (String name : new LinkedHashSet<>(normalized.get(station))) {
+                if (name.startsWith(key)) {
+                    matches.add(new Object[]{name, station});
+                }
+            }
+        }
+        matches.sort(Comparator.comparing(match -> (String) match[0]));
+        Set<TideStation> found = new LinkedHashSet<>();
+        for (Object[] match : matches) {
+            if (found.size() < limit) {
+                found.add((TideStation) match[1]);
+            }
+        }
+        return names(new ArrayList<>(found));
+    }
+
+    private static List<String> names(List<TideStation> stations) {
+        return stations.stream().map(TideStation::getFullName).collect(Collectors.toList());
+    }
+
+    private void same(String what, Object expected, Object actual) {
+        lookups++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures++;
+            System.out.println(what + ": expected " + expected + ", got " + actual + "  FAILED");
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.TimedValue;
+import com.github.jtides.services.TideCalculator;
+import com.github.jtides.services.XMLTideStationService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Run this class: the streams of water heights, without end and cut with limit(...) or with a known number of
+ * values, are consumed in parallel and compared with the sequential stream: same times and HW/LW, same values
+ * within {@value #MAX_DIFFERENCE} (the batches of a split start elsewhere, see CompiledStation#getWaterHeights).
+ * Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class StreamTidesCheck {
+
+    private final static String[] STATIONS = {"Brest", "San Francisco", "Honolulu"};
+    private final static LocalDateTime START = LocalDateTime.of(2019, 12, 30, 0, 0);
+    private final static int[] COUNTS = {10, 1_000, 100_000, 600_000};
+    private final static double MAX_DIFFERENCE = 1E-9D;
+
+    public static void main(String[] args) {
+        TideCalculator calculator = new TideCalculator(new XMLTideStationService());
+        int failures = 0;
+        for (String station : STATIONS) {
+            for (int count : COUNTS) {
+                List<TimedValue> sequential = calculator.streamTides(station, START, 1).limit(count).collect(Collectors.toList());
+                List<TimedValue> unbounded = calculator.streamTides(station, START, 1).parallel().limit(count).collect(Collectors.toList());
+                List<TimedValue> sized = calculator.streamTides(station, START, 1, count).parallel().collect(Collectors.toList());
+                int differences = differences(sequential, unbounded) + differences(sequential, sized);
+                System.out.println(station + " " + count + " values: " + differences + " differences");
+                failures += differences == 0 ? 0 : 1;
+            }
+        }
+        System.out.println(failures + " failures");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static int differences(List<TimedValue> expected, List<TimedValue> actual) {
+        if (expected.size() != actual.size()) {
+            return Math.abs(expected.size() - actual.size()) + 1;
+        }
+        int differences = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            TimedValue a = expected.get(i);
+            TimedValue b = actual.get(i);
+            if (!a.getCalendar().equals(b.getCalendar()) || Math.abs(a.getValue() - b.getValue()) > MAX_DIFFERENCE || a.getType() != b.getType()) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+}
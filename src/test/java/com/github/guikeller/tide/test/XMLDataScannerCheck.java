@@ -0,0 +1,157 @@
+package com.github.guikeller.tide.test;
+
+import com.github.jtides.models.ConstSpeed;
+import com.github.jtides.models.Constituents;
+import com.github.jtides.models.Harmonic;
+import com.github.jtides.models.TideStation;
+import com.github.jtides.services.SpeedConstituentFinder;
+import com.github.jtides.services.StationFinder;
+import com.github.jtides.services.XMLDataLoader;
+import com.github.jtides.services.XMLDataScanner;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Run this class: {@link XMLDataScanner} reads the bundled constituents.xml and stations.xml into the same objects
+ * as the SAX handlers {@link SpeedConstituentFinder} and {@link StationFinder}, every value bit for bit.
+ * So does {@link XMLDataScanner#readStations(byte[], int, Executor)} for several numbers of chunks and threads,
+ * the stations in document order.
+ * Exits with 1 on any difference.
+ * LICENSE: MIT
+ */
+public class XMLDataScannerCheck {
+
+    private final static int[] CHUNKS = {1, 2, 3, 7, 16, 64};
+    private final static int[] THREADS = {1, 4};
+
+    private int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        XMLDataScannerCheck check = new XMLDataScannerCheck();
+        byte[] constituentsXml = readEntry(XMLDataLoader.CONSTITUENTS_ENTRY);
+        byte[] stationsXml = readEntry(XMLDataLoader.STATIONS_ENTRY);
+
+        SpeedConstituentFinder constituentFinder = new SpeedConstituentFinder();
+        parse(constituentsXml, constituentFinder);
+        Constituents expectedConstituents = constituentFinder.getConstituents();
+        Set<TideStation> expected = new LinkedHashSet<>();
+        parse(stationsXml, new StationFinder(expected));
+        List<TideStation> expectedStations = new ArrayList<>(expected);
+
+        check.constituents(expectedConstituents, new XMLDataScanner(constituentsXml, 0, constituentsXml.length).readConstituents());
+        List<TideStation> stations = new ArrayList<>();
+        new XMLDataScanner(stationsXml, 0, stationsXml.length).readStations(stations::add);
+        check.stations("scanner", expectedStations, stations);
+        for (int threads : THREADS) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                for (int chunks : CHUNKS) {
+                    check.stations(chunks + " chunks on " + threads + " threads", expectedStations,
+                            XMLDataScanner.readStations(stationsXml, chunks, executor));
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        System.out.println(expectedConstituents.size() + " constituents, " + expectedStations.size() + " stations, "
+                + check.failures + " failures");
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    private void constituents(Constituents expected, Constituents actual) {
+        Map<String, ConstSpeed> expectedMap = expected.getConstSpeedMap();
+        Map<String, ConstSpeed> actualMap = actual.getConstSpeedMap();
+        same("constituent names", new ArrayList<>(expectedMap.keySet()), new ArrayList<>(actualMap.keySet()));
+        for (Map.Entry<String, ConstSpeed> entry : expectedMap.entrySet()) {
+            ConstSpeed e = entry.getValue();
+            ConstSpeed a = actualMap.get(entry.getKey());
+            if (a == null) {
+                continue;
+            }
+            String what = "constituent " + entry.getKey();
+            same(what + " idx", e.getIdx(), a.getIdx());
+            same(what + " name", e.getCoeffName(), a.getCoeffName());
+            same(what + " value", e.getCoeffValue(), a.getCoeffValue());
+            same(what + " first year", e.getFirstYear(), a.getFirstYear());
+            same(what + " last year", e.getLastYear(), a.getLastYear());
+            for (int year = e.getFirstYear(); year <= e.getLastYear(); year++) {
+                same(what + " equilibrium " + year, e.getEquilibrium(year), a.getEquilibrium(year));
+                same(what + " factor " + year, e.getFactor(year), a.getFactor(year));
+            }
+        }
+    }
+
+    private void stations(String how, List<TideStation> expected, List<TideStation> actual) {
+        same(how + " stations", expected.size(), actual.size());
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            TideStation e = expected.get(i);
+            TideStation a = actual.get(i);
+            String what = how + " station " + i + " " + e.getFullName();
+            same(what + " name", e.getFullName(), a.getFullName());
+            same(what + " name parts", e.getNameParts(), a.getNameParts());
+            same(what + " latitude", e.getLatitude(), a.getLatitude());
+            same(what + " longitude", e.getLongitude(), a.getLongitude());
+            same(what + " base height", e.getBaseHeight(), a.getBaseHeight());
+            same(what + " unit", e.getUnit(), a.getUnit());
+            same(what + " time zone", e.getTimeZone(), a.getTimeZone());
+            same(what + " time offset", e.getTimeOffset(), a.getTimeOffset());
+            same(what + " harmonics", harmonics(e), harmonics(a));
+        }
+    }
+
+    // name, then the bits of the amplitude and the epoch, of each harmonic
+    private static List<Object> harmonics(TideStation station) {
+        List<Object> values = new ArrayList<>();
+        for (Harmonic harmonic : station.getHarmonics()) {
+            values.add(harmonic.getName());
+            values.add(Double.doubleToLongBits(harmonic.getAmplitude()));
+            values.add(Double.doubleToLongBits(harmonic.getEpoch()));
+        }
+        return values;
+    }
+
+    private static void parse(byte[] xml, DefaultHandler handler) throws Exception {
+        InputSource source = new InputSource(new ByteArrayInputStream(xml));
+        source.setEncoding("ISO-8859-1");
+        SAXParserFactory.newInstance().newSAXParser().parse(source, handler);
+    }
+
+    private static byte[] readEntry(String entryName) throws Exception {
+        try (InputStream in = XMLDataLoader.class.getResourceAsStream(XMLDataLoader.ARCHIVE_STREAM);
+             ZipInputStream zip = new ZipInputStream(in)) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().equals(entryName)) {
+                    return XMLDataScanner.readFully(zip, entry.getSize());
+                }
+            }
+        }
+        throw new IllegalStateException("Entry " + entryName + " not found in " + XMLDataLoader.ARCHIVE_STREAM);
+    }
+
+    // doubles bit for bit, NaN included
+    private void same(String what, Object expected, Object actual) {
+        boolean same = expected instanceof Double && actual instanceof Double
+                ? Double.doubleToLongBits((Double) expected) == Double.doubleToLongBits((Double) actual)
+                : expected == null ? actual == null : expected.equals(actual);
+        if (!same) {
+            failures++;
+            System.out.println(what + ": expected " + expected + ", got " + actual + "  FAILED");
+        }
+    }
+
+}